@@ -1,3 +1,6 @@
+import json
+import os
+
 import matplotlib.pyplot as plt
 import numpy as np
 import pandas as pd
@@ -5,18 +8,44 @@ import pandas as pd
 modes = ['parallel', 'sequential', 'distributed']
 colors = ['g', 'b', 'r']
 
+def result_file(mode):
+    # Metrics are written as JSON lines, older runs are plain text logs
+    filename = mode + '_reviews_per_second.jsonl'
+    if os.path.exists(filename):
+        return filename
+    return mode + '_reviews_per_second.txt'
+
 def analyze_reviews(file):
+    # Returns the end time of every interval in seconds since the run started, the reviews analyzed in the
+    # interval and their rate. Intervals can be shorter than a second, so totals are summed from the reviews
+    # and the time axis is built from the timestamps. Older plain text logs have one-second intervals.
+    time = []
+    reviews = []
     reviews_per_second = []
+    start = None
 
     with open(file, 'r') as f:
         for line in f:
-            if "Analyzed Reviews per Second:" in line:
-                    reviews_per_second.append(int(line.split(":")[1].strip()))
-
-    return reviews_per_second
-
-def compute_statistics(reviews_per_second):
-    total_reviews = sum(reviews_per_second)
+            if file.endswith('.jsonl'):
+                if line.strip():
+                    record = json.loads(line)
+                    timestamp = np.datetime64(record['timestamp'].rstrip('Z'))
+                    if start is None:
+                        start = timestamp - np.timedelta64(record['intervalMillis'], 'ms')
+                    time.append((timestamp - start) / np.timedelta64(1, 's'))
+                    reviews.append(record['reviews'])
+                    reviews_per_second.append(round(record['reviewsPerSecond']))
+            elif "Analyzed Reviews per Second:" in line:
+                # Extract the numeric value
+                count = int(line.split(":")[1].strip())
+                time.append(len(time) + 1)
+                reviews.append(count)
+                reviews_per_second.append(count)
+
+    return time, reviews, reviews_per_second
+
+def compute_statistics(reviews, reviews_per_second):
+    total_reviews = sum(reviews)
     average_reviews = np.mean(reviews_per_second)
     max_reviews = np.max(reviews_per_second)
     median_reviews = np.median(reviews_per_second)
@@ -38,9 +67,8 @@ def plot_analysis(modes, colors):
     plt.figure(figsize=(12, 8))
 
     for mode, color in zip(modes, colors):
-        filename = mode + '_reviews_per_second.txt'
-        reviews_per_second = analyze_reviews(filename)
-        time = range(1, len(reviews_per_second) + 1)
+        filename = result_file(mode)
+        time, _, reviews_per_second = analyze_reviews(filename)
 
         plt.plot(time, reviews_per_second, marker='o', linestyle='-', color=color, label=mode.capitalize())
 
@@ -74,8 +102,8 @@ def plot_heatmap(modes):
     plt.figure(figsize=(12, 8))
 
     for i, mode in enumerate(modes):
-        filename = mode + '_reviews_per_second.txt'
-        reviews_per_second = analyze_reviews(filename)
+        filename = result_file(mode)
+        _, _, reviews_per_second = analyze_reviews(filename)
 
         # Create a histogram
         plt.hist(reviews_per_second, bins=50, alpha=0.5, color=colors[i], label=mode.capitalize(), density=True)
@@ -92,8 +120,8 @@ def plot_heatmap(modes):
 def plot_boxplot(modes):
     data = []
     for mode in modes:
-        filename = mode + '_reviews_per_second.txt'
-        reviews_per_second = analyze_reviews(filename)
+        filename = result_file(mode)
+        _, _, reviews_per_second = analyze_reviews(filename)
         data.append(reviews_per_second)
 
     plt.figure(figsize=(12, 8))
@@ -110,9 +138,8 @@ def plot_analysis2(modes, colors):
     plt.figure(figsize=(12, 8))
 
     for mode, color in zip(modes, colors):
-        filename = mode + '_reviews_per_second.txt'
-        reviews_per_second = analyze_reviews(filename)
-        time = range(1, len(reviews_per_second) + 1)
+        filename = result_file(mode)
+        time, _, reviews_per_second = analyze_reviews(filename)
 
         # Convert to DataFrame for easier rolling mean calculation
         df = pd.DataFrame({'Time': time, 'Reviews': reviews_per_second})
@@ -136,9 +163,9 @@ def plot_statistics_comparison(modes, colors):
     # Prepare data
     stats_all = {}
     for mode in modes:
-        filename = mode + '_reviews_per_second.txt'
-        reviews_per_second = analyze_reviews(filename)
-        stats_all[mode] = compute_statistics(reviews_per_second)
+        filename = result_file(mode)
+        _, reviews, reviews_per_second = analyze_reviews(filename)
+        stats_all[mode] = compute_statistics(reviews, reviews_per_second)
 
     # Create subplots
     fig, axes = plt.subplots(2, 4, figsize=(18, 10), sharey='row')
@@ -165,10 +192,10 @@ if __name__ == '__main__':
     plot_statistics_comparison(modes, colors)
 
     for mode in modes:
-        filename = mode + '_reviews_per_second.txt'
-        reviews_per_second = analyze_reviews(filename)
+        filename = result_file(mode)
+        _, reviews, reviews_per_second = analyze_reviews(filename)
 
-        stats = compute_statistics(reviews_per_second)
+        stats = compute_statistics(reviews, reviews_per_second)
         # plot_statistics(stats)
 
         print(f"Statistics for {mode.capitalize()}:")
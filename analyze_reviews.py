@@ -1,24 +1,46 @@
+import json
+import os
+
 import matplotlib.pyplot as plt
 import numpy as np
 
 mode = 'sequential'  # or 'parallel'
 
-# Read the data from the file
-filename = mode+'_reviews_per_second.txt'
+# Read the data from the file, metrics are written as JSON lines, older runs are plain text logs
+filename = mode+'_reviews_per_second.jsonl'
+if not os.path.exists(filename):
+    filename = mode+'_reviews_per_second.txt'
 def analyze_reviews(file):
-    # Read the file and extract the reviews per second
+    # Returns the end time of every interval in seconds since the run started, the reviews analyzed in the
+    # interval and their rate. Intervals can be shorter than a second, so totals are summed from the reviews
+    # and the time axis is built from the timestamps. Older plain text logs have one-second intervals.
+    time = []
+    reviews = []
     reviews_per_second = []
+    start = None
 
     with open(file, 'r') as f:
         for line in f:
-            if "Analyzed Reviews per Second:" in line:
+            if file.endswith('.jsonl'):
+                if line.strip():
+                    record = json.loads(line)
+                    timestamp = np.datetime64(record['timestamp'].rstrip('Z'))
+                    if start is None:
+                        start = timestamp - np.timedelta64(record['intervalMillis'], 'ms')
+                    time.append((timestamp - start) / np.timedelta64(1, 's'))
+                    reviews.append(record['reviews'])
+                    reviews_per_second.append(round(record['reviewsPerSecond']))
+            elif "Analyzed Reviews per Second:" in line:
                 # Extract the numeric value
-                reviews_per_second.append(int(line.split(":")[1].strip()))
+                count = int(line.split(":")[1].strip())
+                time.append(len(time) + 1)
+                reviews.append(count)
+                reviews_per_second.append(count)
 
-    return reviews_per_second
+    return time, reviews, reviews_per_second
 
-def compute_statistics(reviews_per_second):
-    total_reviews = sum(reviews_per_second)
+def compute_statistics(reviews, reviews_per_second):
+    total_reviews = sum(reviews)
     average_reviews = np.mean(reviews_per_second)
     max_reviews = np.max(reviews_per_second)
     median_reviews = np.median(reviews_per_second)
@@ -36,9 +58,7 @@ def compute_statistics(reviews_per_second):
         'Percentage Zero Reviews': percentage_zero,
     }
 
-def plot_analysis(reviews_per_second):
-    time = range(1, len(reviews_per_second) + 1)
-
+def plot_analysis(time, reviews_per_second):
     plt.figure(figsize=(12, 10))
 
     # Line plot for Reviews per Second
@@ -83,10 +103,10 @@ def plot_statistics(stats):
 
 # MainSequentialAndParallel function to run the analysis
 if __name__ == '__main__':
-    reviews_per_second = analyze_reviews(filename)
+    time, reviews, reviews_per_second = analyze_reviews(filename)
 
     # Compute statistics
-    stats = compute_statistics(reviews_per_second)
+    stats = compute_statistics(reviews, reviews_per_second)
 
     # Print statistics to the console
     print("Statistics:")
@@ -95,7 +115,7 @@ if __name__ == '__main__':
 
 
     # Generate the analysis plots
-    plot_analysis(reviews_per_second)
+    plot_analysis(time, reviews_per_second)
 
     # # Generate the statistics plot
     # plot_statistics(stats)
\ No newline at end of file
@@ -0,0 +1,125 @@
+package Benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Minimal microbenchmark harness for the per-review hot paths.
+ *
+ * An operation is run over the inputs of a corpus bucket in rounds, each round repeating the inputs until
+ * it has lasted at least {@code roundMillis}. Warm-up rounds let the JIT compile the operation, then the
+ * measured rounds report the median time per operation and, from the thread allocation counter of the JVM,
+ * the bytes allocated per operation. Results of the operation are consumed so the JIT cannot eliminate the work.
+ */
+public class MicroBenchmark {
+    private static final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static volatile int sink;
+
+    private final int warmupRounds;
+    private final int measuredRounds;
+    private final long roundNanos;
+
+    public MicroBenchmark(int warmupRounds, int measuredRounds, long roundMillis) {
+        this.warmupRounds = warmupRounds;
+        this.measuredRounds = measuredRounds;
+        this.roundNanos = TimeUnit.MILLISECONDS.toNanos(roundMillis);
+    }
+
+    /**
+     * Benchmarks an operation over the given inputs.
+     *
+     * @param name The name of the benchmark.
+     * @param bucket The corpus bucket of the inputs.
+     * @param inputs The inputs, a round runs the operation once per input until the round time is reached.
+     * @param operation The operation to measure.
+     * @return The measured result.
+     */
+    public <T> Result run(String name, String bucket, List<T> inputs, Function<T, ?> operation) {
+        for (int i = 0; i < warmupRounds; i++) {
+            runRound(inputs, operation);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        double[] nanosPerOperation = new double[measuredRounds];
+        long operations = 0;
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < measuredRounds; i++) {
+            long startNanos = System.nanoTime();
+            long roundOperations = runRound(inputs, operation);
+            nanosPerOperation[i] = (System.nanoTime() - startNanos) / (double) roundOperations;
+            operations += roundOperations;
+        }
+        long allocatedBytes = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        Arrays.sort(nanosPerOperation);
+        double median = nanosPerOperation[measuredRounds / 2];
+        return new Result(name, bucket, operations, median, allocatedBytes / (double) operations);
+    }
+
+    private <T> long runRound(List<T> inputs, Function<T, ?> operation) {
+        long operations = 0;
+        long startNanos = System.nanoTime();
+        do {
+            for (T input : inputs) {
+                Object result = operation.apply(input);
+                sink += result == null ? 0 : result.hashCode();
+            }
+            operations += inputs.size();
+        } while (System.nanoTime() - startNanos < roundNanos);
+        return operations;
+    }
+
+    /**
+     * The measured cost of one operation.
+     */
+    public static class Result {
+        private final String name;
+        private final String bucket;
+        private final long operations;
+        private final double nanosPerOperation;
+        private final double bytesPerOperation;
+
+        public Result(String name, String bucket, long operations, double nanosPerOperation, double bytesPerOperation) {
+            this.name = name;
+            this.bucket = bucket;
+            this.operations = operations;
+            this.nanosPerOperation = nanosPerOperation;
+            this.bytesPerOperation = bytesPerOperation;
+        }
+
+        /**
+         * @return The key of the result in a baseline file, the benchmark name and bucket.
+         */
+        public String getKey() {
+            return name + "/" + bucket;
+        }
+
+        public double getNanosPerOperation() {
+            return nanosPerOperation;
+        }
+
+        public double getBytesPerOperation() {
+            return bytesPerOperation;
+        }
+
+        /**
+         * @return The result as one JSON line.
+         */
+        public String toJson() {
+            return String.format(Locale.ROOT,
+                    "{\"benchmark\":\"%s\",\"bucket\":\"%s\",\"operations\":%d,\"nanosPerOp\":%.1f,\"bytesPerOp\":%.1f}",
+                    name, bucket, operations, nanosPerOperation, bytesPerOperation);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-28s %-7s %12.1f ns/op %12.1f B/op %10.0f ops/s",
+                    name, bucket, nanosPerOperation, bytesPerOperation, 1e9 / nanosPerOperation);
+        }
+    }
+}
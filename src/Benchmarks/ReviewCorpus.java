@@ -0,0 +1,37 @@
+package Benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A checked-in corpus of real-shaped review frames, bucketed by review length.
+ *
+ * Every line of a corpus file is one WebSocket frame in the format expected by {@link Utils.MessageParser}.
+ * The buckets are stored as reviews_short.jsonl, reviews_medium.jsonl and reviews_long.jsonl.
+ */
+public class ReviewCorpus {
+    public static final String[] BUCKETS = {"short", "medium", "long"};
+
+    private ReviewCorpus() {
+    }
+
+    /**
+     * Loads the frames of one bucket.
+     *
+     * @param corpusDirectory The directory with the corpus files.
+     * @param bucket The length bucket (short, medium or long).
+     * @return The non-empty frames of the bucket.
+     * @throws IOException if the corpus file cannot be read.
+     */
+    public static List<String> load(String corpusDirectory, String bucket) throws IOException {
+        Path file = Paths.get(corpusDirectory, "reviews_" + bucket + ".jsonl");
+        return Files.readAllLines(file, StandardCharsets.UTF_8).stream()
+                .filter(line -> !line.isBlank())
+                .collect(Collectors.toList());
+    }
+}
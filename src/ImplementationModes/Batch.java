@@ -0,0 +1,292 @@
+package ImplementationModes;
+
+import Utils.MessageParser;
+import Utils.Review;
+import Utils.ReviewCounter;
+import Utils.SentimentAnalyzerPool;
+import Utils.SentimentResult;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static Utils.Config.*;
+
+/**
+ * Offline sentiment analysis of a JSON-lines file of reviews, at the speed of the machine instead of the stream.
+ *
+ * Every line of the input has the shape of a WebSocket message, as read by {@link MessageParser}.
+ * The file is split into byte ranges that always start and end on a line boundary, and the ranges
+ * are analyzed by recursive tasks on a ForkJoinPool, where idle threads steal the ranges of busy ones.
+ * Every pool thread has its own analyzer from a {@link SentimentAnalyzerPool}.
+ *
+ * Each range writes its results to its own part file, so no thread waits for another to write. The part
+ * files go to a new directory next to the output for every run, which is removed even if the run fails,
+ * so parts of an earlier run never end up in the output.
+ * When all ranges are done, the part files are concatenated in file order, so the output lines
+ * follow the order of the input lines. Every output line holds the byte offset of its input line,
+ * the topic, the sentiment class and the score of every sentence.
+ *
+ * Usage:
+ * - Invoke `analyzeFile(input, output, threads)` to analyze a file and print the reviews per second.
+ */
+public class Batch {
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final int SCAN_BUFFER_BYTES = 8192;
+
+    /**
+     * Analyzes every review of a JSON-lines file and writes one result line per review.
+     *
+     * @param inputFile The JSON-lines file of review messages.
+     * @param outputFile The results file, replaced if it exists.
+     * @param threads The number of analysis threads.
+     * @return The number of analyzed reviews.
+     */
+    public static long analyzeFile(String inputFile, String outputFile, int threads) throws IOException {
+        Path input = Paths.get(inputFile);
+        Path output = Paths.get(outputFile);
+
+        SentimentAnalyzerPool analyzerPool = new SentimentAnalyzerPool(threads);
+        ForkJoinPool forkJoinPool = new ForkJoinPool(threads, analyzerPool.forkJoinThreadFactory("batch-worker"), null, false);
+        ReviewCounter analyzedReviewsCounter = new ReviewCounter(B_RESULT_FILE);
+        analyzedReviewsCounter.setGauges(
+                () -> (int) Math.min(Integer.MAX_VALUE, forkJoinPool.getQueuedTaskCount()),
+                forkJoinPool::getActiveThreadCount,
+                () -> (double) forkJoinPool.getActiveThreadCount() / forkJoinPool.getParallelism());
+
+        Path outputDirectory = output.toAbsolutePath().getParent();
+        Files.createDirectories(outputDirectory);
+        Path partsDirectory = Files.createTempDirectory(outputDirectory, output.getFileName() + ".parts-");
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            long fileBytes = channel.size();
+            System.out.println("Analyzing " + fileBytes + " bytes of " + input + " with " + threads + " threads");
+            BatchJob job = new BatchJob(channel, partsDirectory, analyzerPool, analyzedReviewsCounter);
+
+            long startNanos = System.nanoTime();
+            analyzedReviewsCounter.startCounting();
+            long reviews;
+            try {
+                reviews = forkJoinPool.invoke(new RangeTask(job, 0, fileBytes));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                analyzedReviewsCounter.stop();
+                forkJoinPool.shutdown();
+            }
+            mergeParts(partsDirectory, output);
+            double elapsedSeconds = Math.max(1, System.nanoTime() - startNanos) / 1e9;
+
+            System.out.printf("Batch analyzed %d reviews (%d lines skipped) in %.1f s: %.1f reviews per second%n",
+                    reviews, job.skippedLines.get(), elapsedSeconds, reviews / elapsedSeconds);
+            System.out.println(GREEN + "Results written to " + RESET + output);
+            return reviews;
+        } finally {
+            deleteParts(partsDirectory);
+        }
+    }
+
+    /**
+     * Deletes the parts directory with the part files a failed run left behind. After a merge it is already gone.
+     */
+    private static void deleteParts(Path partsDirectory) {
+        if (!Files.exists(partsDirectory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(partsDirectory)) {
+            for (Path part : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(part);
+            }
+            Files.deleteIfExists(partsDirectory);
+        } catch (IOException e) {
+            System.out.println("Error deleting the part files in " + partsDirectory + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Concatenates the part files in the order of their ranges and deletes them.
+     */
+    private static void mergeParts(Path partsDirectory, Path output) throws IOException {
+        List<Path> parts;
+        try (Stream<Path> files = Files.list(partsDirectory)) {
+            // Part files are named after their zero-padded start offset, so the name order is the file order
+            parts = files.sorted().collect(Collectors.toList());
+        }
+        try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Path part : parts) {
+                try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+                    long position = 0;
+                    long size = in.size();
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+                Files.delete(part);
+            }
+        }
+        Files.delete(partsDirectory);
+    }
+
+    /**
+     * State shared by all range tasks of one file.
+     */
+    private static class BatchJob {
+        private final FileChannel channel;
+        private final Path partsDirectory;
+        private final SentimentAnalyzerPool analyzerPool;
+        private final ReviewCounter analyzedReviewsCounter;
+        private final AtomicLong skippedLines = new AtomicLong(0);
+
+        private BatchJob(FileChannel channel, Path partsDirectory, SentimentAnalyzerPool analyzerPool,
+                         ReviewCounter analyzedReviewsCounter) {
+            this.channel = channel;
+            this.partsDirectory = partsDirectory;
+            this.analyzerPool = analyzerPool;
+            this.analyzedReviewsCounter = analyzedReviewsCounter;
+        }
+
+        /**
+         * Finds the first line start at or after a position.
+         *
+         * @return The offset just after the next newline, or the end of the range if there is none.
+         */
+        private long nextLineStart(long position, long end) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_BYTES);
+            long offset = position;
+            while (offset < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(SCAN_BUFFER_BYTES, end - offset));
+                int read = channel.read(buffer, offset);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n') {
+                        return offset + i + 1;
+                    }
+                }
+                offset += read;
+            }
+            return end;
+        }
+    }
+
+    /**
+     * Analyzes the lines of a byte range, splitting it in two on a line boundary while it is larger
+     * than {@code BATCH_SPLIT_BYTES}.
+     */
+    private static class RangeTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+        private final BatchJob job;
+        private final long start;
+        private final long end;
+
+        private RangeTask(BatchJob job, long start, long end) {
+            this.job = job;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Long compute() {
+            try {
+                if (end - start > BATCH_SPLIT_BYTES) {
+                    // The first half ends with the line that crosses the middle
+                    long middle = job.nextLineStart(start + (end - start) / 2 - 1, end);
+                    if (middle > start && middle < end) {
+                        RangeTask second = new RangeTask(job, middle, end);
+                        second.fork();
+                        long first = new RangeTask(job, start, middle).compute();
+                        return first + second.join();
+                    }
+                }
+                return analyzeRange();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private long analyzeRange() throws IOException {
+            if (end - start > Integer.MAX_VALUE) {
+                // Only happens when the split found no line break after the middle of the range
+                throw new IOException("Range " + start + "-" + end + " of " + (end - start)
+                        + " bytes exceeds the 2 GB that can be mapped at once and could not be split at a line break");
+            }
+            MappedByteBuffer range = job.channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            Path partFile = job.partsDirectory.resolve(String.format("part-%019d.jsonl", start));
+            long reviews = 0;
+            try (BufferedWriter writer = Files.newBufferedWriter(partFile, StandardCharsets.UTF_8);
+                 JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+                // Lines are separated explicitly, and the writer is only flushed when the range is done
+                generator.setRootValueSeparator(null);
+                while (range.hasRemaining()) {
+                    long arrivedNanos = System.nanoTime();
+                    long lineOffset = start + range.position();
+                    String line = readLine(range);
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    Review review = MessageParser.parseReview(line);
+                    long parsedNanos = System.nanoTime();
+                    if (review == null) {
+                        job.skippedLines.incrementAndGet();
+                        continue;
+                    }
+                    long startedNanos = System.nanoTime();
+                    SentimentResult result = job.analyzerPool.current().analyze(review.getReviewText());
+                    long finishedNanos = System.nanoTime();
+                    writeResult(generator, lineOffset, review.getTopic(), result);
+                    generator.writeRaw('\n');
+                    job.analyzedReviewsCounter.increment(arrivedNanos, parsedNanos, startedNanos, finishedNanos);
+                    reviews++;
+                }
+            }
+            return reviews;
+        }
+
+        private static String readLine(MappedByteBuffer range) {
+            int lineStart = range.position();
+            int lineEnd = lineStart;
+            while (lineEnd < range.limit() && range.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            range.position(Math.min(range.limit(), lineEnd + 1));
+            if (lineEnd > lineStart && range.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            byte[] bytes = new byte[lineEnd - lineStart];
+            range.get(lineStart, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private static void writeResult(JsonGenerator generator, long offset, String topic, SentimentResult result) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("offset", offset);
+            generator.writeStringField("topic", topic);
+            generator.writeStringField("sentiment", result.getSentiment());
+            generator.writeNumberField("score", result.getSentimentScore());
+            generator.writeArrayFieldStart("sentenceScores");
+            for (byte score : result.getSentenceScores()) {
+                generator.writeNumber(score);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+}
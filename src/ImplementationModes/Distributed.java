@@ -1,56 +1,112 @@
 package ImplementationModes;
 
+import Utils.AdmissionController;
+import Utils.AsyncLog;
+import Utils.FrameRecorder;
+import Utils.IngestManager;
 import Utils.MessageParser;
+import Utils.MpiChannel;
+import Utils.ResultStore;
+import Utils.Review;
 import Utils.ReviewCounter;
+import Utils.SentimentAggregator;
 import Utils.SentimentAnalyzer;
-import Utils.WebSocketConnection;
+import Utils.SentimentAnalyzerPool;
+import Utils.SentimentResult;
+import Utils.Warmup;
+import Utils.WireProtocol;
 import mpi.MPI;
 import mpi.MPIException;
 import mpi.Request;
 import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletionStage;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import static Utils.Config.*;
 import static Utils.MessageParser.extractTopics;
 
 public class Distributed {
     private static final int MASTER = 0;
-    private static AtomicReference<WebSocket> webSocketRef = new AtomicReference<>();
-    private static Thread webSocketThread;
+    private static final int WORK_TAG = 0;
+    private static final int RESULT_TAG = 1;
+    private static final int SHUTDOWN_TAG = 2;
+    private static final int HELLO_TAG = 3;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    // A worker with batches in progress backs off up to this long between polls of the master
+    private static final long MAX_WORKER_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long DRAIN_TIMEOUT_MILLIS = 5_000;
+    private static IngestManager ingestManager;
+    private static SentimentAggregator sentimentAggregator;
+    private static ResultStore resultStore;
     private static MasterWebSocketListener masterListener;
+    private static MasterScheduler masterScheduler;
+    private static final CountDownLatch masterFinished = new CountDownLatch(1);
+    private static final AdmissionController admissionController = new AdmissionController();
 
     /**
      * Initialization of the MPI environment, managing the websocket connection and
      * manages processes based on the MPI rank.
+     * <p>
+     * On the master, ingest runs on the connections of an {@link IngestManager} and only fills a queue
+     * of reviews, while the calling thread runs the {@link MasterScheduler} that owns all MPI communication.
+     * </p>
      *
      * @param message the message to send via the websocket
      * @param args the arguments for initializing the MPI environment
      *
      * @throws MPIException if error occurs during MPI initialization or finalization
-     * @throws InterruptedException if the thread is interrupted while waiting for the WebSocket thread
      */
     public static void webConnectionAndTopicSubscription(String message, String[] args) {
+        boolean master = false;
         try {
             MPI.Init(args);
             int rank = MPI.COMM_WORLD.Rank();
             int size = MPI.COMM_WORLD.Size();
 
             if (rank == MASTER) {
-                webSocketThread = new Thread(() -> {
-                    WebSocketConnection connection = new WebSocketConnection(WEB_SOCKET_URL);
-                    masterListener = new MasterWebSocketListener(message, size);
-                    connection.connect(masterListener);
-                });
+                master = true;
+                // Holds no more reviews than the master has room for, see MasterWebSocketListener
+                int queueCapacity = Math.max(1, DISTRIBUTED_QUEUE_CAPACITY);
+                BlockingQueue<PendingReview> pendingReviews = new LinkedBlockingQueue<>(queueCapacity);
+                masterListener = new MasterWebSocketListener(pendingReviews, queueCapacity);
+                masterScheduler = new MasterScheduler(size, pendingReviews, masterListener);
+                masterListener.getAnalyzedReviewsCounter().setGauges(
+                        () -> pendingReviews.size() + masterScheduler.getStagedReviews(),
+                        masterScheduler::getInFlightReviews,
+                        masterScheduler::getBusyWorkerFraction);
+                masterListener.getAnalyzedReviewsCounter().setAdmissionController(admissionController);
 
-                webSocketThread.start();
-                webSocketThread.join();
+                sentimentAggregator = new SentimentAggregator();
+                sentimentAggregator.start();
+                resultStore = ResultStore.fromConfig();
+                ingestManager = new IngestManager(WEB_SOCKET_URL, extractTopics(message), INGEST_CONNECTIONS_PER_TOPIC, masterListener);
 
+                // Subscribing waits until every worker has loaded its models and warmed up
+                masterScheduler.run(ingestManager::start);
             } else {
                 new WorkerProcess().start();
             }
-        } catch (MPIException | InterruptedException e) {
+        } catch (MPIException e) {
             e.printStackTrace();
         } finally {
             try {
@@ -59,98 +115,563 @@ public class Distributed {
             } catch (MPIException e) {
                 e.printStackTrace();
             }
+            if (master) {
+                masterFinished.countDown();
+            }
         }
     }
 
     /**
      * Handles WebSocket communication for the master process.
-     * Implements the {@link WebSocket.Listener} interface to process incoming messages,
-     * distribute work to MPI workers, and collect results.
+     * Implements the {@link WebSocket.Listener} interface to process incoming messages
+     * and hand the extracted reviews to the {@link MasterScheduler}. No MPI calls are made
+     * from the WebSocket thread, so ingest never waits for the workers.
+     * <p>
+     * The master holds at most {@code DISTRIBUTED_QUEUE_CAPACITY} reviews between ingest and the workers,
+     * the same way the parallel mode uses credit: a connection only requests its next frame once it has
+     * reserved a slot for it. The slot is freed when the scheduler sends or sheds the review. A connection
+     * that finds no free slot waits, and the freed slots go to the connection that has waited longest.
+     * </p>
      */
     public static class MasterWebSocketListener implements WebSocket.Listener {
-        private final String message;
-        private final int numWorkerProcesses;
+        private final BlockingQueue<PendingReview> pendingReviews;
+        private final int queueCapacity;
+        // Reviews queued or staged on the master plus the frames requested for them, never more than queueCapacity
+        private final AtomicInteger reservedSlots = new AtomicInteger();
+        // Open connections with a requested frame that has not arrived yet
+        private final Set<WebSocket> requestedConnections = ConcurrentHashMap.newKeySet();
+        private final Set<WebSocket> openConnections = ConcurrentHashMap.newKeySet();
+        // Open connections waiting for a free slot, in the order they ran out
+        private final Queue<WebSocket> waitingConnections = new ConcurrentLinkedQueue<>();
         private final ReviewCounter analyzedReviewsCounter = new ReviewCounter(D_RESULT_FILE);
-        private final List<String> reviewBuffer = new ArrayList<>();
+        private final FrameRecorder frameRecorder = FrameRecorder.fromConfig();
 
-        public MasterWebSocketListener(String message, int numWorkers) {
-            this.message = message;
-            this.numWorkerProcesses = numWorkers;
+        public MasterWebSocketListener(BlockingQueue<PendingReview> pendingReviews, int queueCapacity) {
+            this.pendingReviews = pendingReviews;
+            this.queueCapacity = queueCapacity;
             analyzedReviewsCounter.startCounting();
         }
 
         @Override
         public void onOpen(WebSocket webSocket) {
             System.out.println("WebSocket opened");
-            webSocketRef.set(webSocket);
-            String[] topics = extractTopics(message);
+            openConnections.add(webSocket);
+            requestNext(webSocket);
+        }
 
-            for (String topic : topics) {
-                webSocket.sendText("topic:" + topic.trim(), true);
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            long arrivedNanos = System.nanoTime();
+            // The slot reserved for this frame now belongs to its review
+            requestedConnections.remove(webSocket);
+            Review review = MessageParser.parseReview(data);
+            frameRecorder.record(data, review == null ? null : review.getTopic(), arrivedNanos);
+            if (review != null) {
+                pendingReviews.offer(new PendingReview(review, arrivedNanos, System.nanoTime()));
+            } else {
+                AsyncLog.warn("Review text not found in the message.");
+                reservedSlots.decrementAndGet();
             }
-            webSocket.request(1);
+            requestNext(webSocket);
+            return null;
         }
 
         @Override
-        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
-            String reviewText = MessageParser.extractReviewText(data.toString());
-            if (reviewText != null) {
-                reviewBuffer.add(reviewText);
-                if (reviewBuffer.size() == numWorkerProcesses - 1) {
-                    distributeWork();
-                    collectResults();
-                    reviewBuffer.clear();
-                }
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            closed(webSocket);
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            System.out.println("WebSocket error: " + error.getMessage());
+            closed(webSocket);
+        }
+
+        /**
+         * Frees the slot of a review that the scheduler has sent to a worker or shed, and gives it to the
+         * connection that has waited longest.
+         */
+        void releaseSlot() {
+            reservedSlots.decrementAndGet();
+            grantWaiting();
+        }
+
+        /**
+         * Requests the next frame of a connection if a slot is free, otherwise queues it up for one.
+         */
+        private void requestNext(WebSocket webSocket) {
+            if (reserveSlot()) {
+                request(webSocket);
             } else {
-                System.out.println("Review text not found in the message.");
+                waitingConnections.offer(webSocket);
+                // A slot may have been freed before the connection was queued
+                grantWaiting();
+            }
+        }
+
+        private void grantWaiting() {
+            while (reservedSlots.get() < queueCapacity) {
+                WebSocket next = waitingConnections.poll();
+                if (next == null) {
+                    return;
+                }
+                if (!openConnections.contains(next)) {
+                    continue;
+                }
+                if (reserveSlot()) {
+                    request(next);
+                } else {
+                    // Another thread took the slot in the meantime
+                    waitingConnections.offer(next);
+                }
+            }
+        }
+
+        private boolean reserveSlot() {
+            while (true) {
+                int reserved = reservedSlots.get();
+                if (reserved >= queueCapacity) {
+                    return false;
+                }
+                if (reservedSlots.compareAndSet(reserved, reserved + 1)) {
+                    return true;
+                }
             }
+        }
+
+        private void request(WebSocket webSocket) {
+            requestedConnections.add(webSocket);
             webSocket.request(1);
-            return null;
         }
 
-        private void distributeWork() {
+        /**
+         * Takes back the slot a closed connection reserved for a frame that never arrived.
+         */
+        private void closed(WebSocket webSocket) {
+            openConnections.remove(webSocket);
+            waitingConnections.remove(webSocket);
+            if (requestedConnections.remove(webSocket)) {
+                releaseSlot();
+            }
+        }
+
+        public ReviewCounter getAnalyzedReviewsCounter() {
+            return analyzedReviewsCounter;
+        }
+
+        public void stopReviewCounter() {
+            analyzedReviewsCounter.stop();
+            frameRecorder.close();
+        }
+    }
+
+    /**
+     * Pipelined scheduler of the master process, the only code on the master that talks MPI.
+     * <p>
+     * Every review gets a sequence id and is kept until its result arrives. Workers only send back
+     * the id, the sentiment and timing fields (see {@link WireProtocol}), and the scheduler joins
+     * each result back to the review it holds.
+     * </p>
+     * <p>
+     * Reviews are packed into batches of up to {@code DISTRIBUTED_BATCH_SIZE}. A partial batch is sent
+     * once its oldest review has waited {@code DISTRIBUTED_BATCH_LINGER_MILLIS}. Batches are sent with
+     * non-blocking {@code Isend} and results are picked up with {@code Iprobe} in whatever order the
+     * workers finish them. Every worker keeps at least {@code DISTRIBUTED_IN_FLIGHT} batches in flight, and
+     * a worker that returns a result is given new work right away (dynamic self-scheduling), so a slow
+     * review only holds up its own worker.
+     * </p>
+     * <p>
+     * The {@link AdmissionController} is applied as soon as reviews are staged, not only when a worker
+     * is free: staged reviews that waited longer than the latency budget are shed from the head or marked
+     * as degraded, while no worker takes new work. Every review that is sent or shed frees its slot in the
+     * {@link MasterWebSocketListener}, which only then requests more frames, so the master never holds
+     * more than {@code DISTRIBUTED_QUEUE_CAPACITY} reviews when the stream bursts.
+     * </p>
+     * <p>
+     * Every batch gets a deadline from the latency its worker has shown so far: a smoothed mean plus four
+     * times the smoothed deviation, as TCP computes its retransmission timeout. A batch that is past its
+     * deadline is sent once more to the least loaded other worker with a free slot, before any new batch
+     * takes that slot, and the first result wins; the other copy is ignored when it arrives. A worker gets
+     * one batch in flight less for every batch that misses its deadline, down to one, even if no copy
+     * could be sent, and earns them back with every batch it returns in time.
+     * </p>
+     */
+    public static class MasterScheduler {
+        private final int numWorkerProcesses;
+        private final BlockingQueue<PendingReview> pendingReviews;
+        private final MasterWebSocketListener listener;
+        private final ReviewCounter analyzedReviewsCounter;
+        private final int[] inFlight;
+        private final int[] inFlightLimit;
+        private final MpiChannel channel;
+        private final List<Request> pendingSends = new ArrayList<>();
+        private final ArrayDeque<PendingReview> stagedReviews = new ArrayDeque<>();
+        private final Map<Long, PendingReview> sentReviews = new HashMap<>();
+        // Batches waiting for their first result, by the id of their first review
+        private final Map<Long, InFlightBatch> inFlightBatches = new HashMap<>();
+        private final double[] latencyNanos;
+        private final double[] latencyDeviationNanos;
+        private final int[] lagPenalty;
+        private final long minDeadlineNanos = TimeUnit.MILLISECONDS.toNanos(DISTRIBUTED_MIN_DEADLINE_MILLIS);
+        private final long initialDeadlineNanos = TimeUnit.MILLISECONDS.toNanos(DISTRIBUTED_INITIAL_DEADLINE_MILLIS);
+        private final long batchLingerNanos = TimeUnit.MILLISECONDS.toNanos(DISTRIBUTED_BATCH_LINGER_MILLIS);
+        private final int batchSize = Math.max(1, DISTRIBUTED_BATCH_SIZE);
+        private long nextReviewId = 0;
+        // Published by the scheduler thread for the metrics gauges
+        private volatile int stagedCount = 0;
+        private volatile int inFlightCount = 0;
+        private volatile int busyWorkers = 0;
+        private final AtomicBoolean running = new AtomicBoolean(true);
+
+        public MasterScheduler(int numWorkerProcesses, BlockingQueue<PendingReview> pendingReviews, MasterWebSocketListener listener) {
+            this.numWorkerProcesses = numWorkerProcesses;
+            this.pendingReviews = pendingReviews;
+            this.listener = listener;
+            this.analyzedReviewsCounter = listener.getAnalyzedReviewsCounter();
+            this.inFlight = new int[numWorkerProcesses];
+            this.inFlightLimit = new int[numWorkerProcesses];
+            this.latencyNanos = new double[numWorkerProcesses];
+            this.latencyDeviationNanos = new double[numWorkerProcesses];
+            this.lagPenalty = new int[numWorkerProcesses];
+            this.channel = new MpiChannel(numWorkerProcesses);
+        }
+
+        /**
+         * Runs the scheduling loop until {@link #stop()} is called, then waits for the batches that are
+         * still in flight and sends the shutdown signal to every worker.
+         *
+         * @param workersReady Called once every worker is warmed up and ready for work.
+         */
+        public void run(Runnable workersReady) {
             try {
-                System.out.println("Distributing " + reviewBuffer.size() + " reviews.");
-                for (int i = 1; i < numWorkerProcesses; i++) {
-                    String reviewText = reviewBuffer.get(i - 1);
-                    MPI.COMM_WORLD.Send(reviewText.toCharArray(), 0, reviewText.length(), MPI.CHAR, i, 0);
+                awaitWorkers();
+                workersReady.run();
+                while (running.get()) {
+                    boolean progress = collectResults();
+                    stageReviews();
+                    progress |= speculateStragglers();
+                    progress |= distributeWork();
+                    completeSends();
+                    publishGauges();
+                    if (!progress) {
+                        LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    }
                 }
+                drainInFlight();
+                sendShutdownSignal();
             } catch (MPIException e) {
                 e.printStackTrace();
             }
         }
 
-        private void collectResults() {
-            try {
-                for (int i = 1; i < numWorkerProcesses; i++) {
-                    char[] resultBuffer = new char[4096];
-                    MPI.COMM_WORLD.Recv(resultBuffer, 0, 4096, MPI.CHAR, i, 0);
-                    String result = new String(resultBuffer).trim();
-                    if (!result.isEmpty()) {
-                        System.out.println(GREEN + "Review and Sentiment (Worker " + i + "): " + RESET + result);
-                        analyzedReviewsCounter.increment();
+        public void stop() {
+            running.set(false);
+        }
+
+        private void publishGauges() {
+            int busy = 0;
+            for (int i = 1; i < numWorkerProcesses; i++) {
+                if (inFlight[i] > 0) {
+                    busy++;
+                }
+            }
+            busyWorkers = busy;
+            stagedCount = stagedReviews.size();
+            inFlightCount = sentReviews.size();
+        }
+
+        public int getStagedReviews() {
+            return stagedCount;
+        }
+
+        public int getInFlightReviews() {
+            return inFlightCount;
+        }
+
+        public double getBusyWorkerFraction() {
+            return numWorkerProcesses > 1 ? (double) busyWorkers / (numWorkerProcesses - 1) : 0.0;
+        }
+
+        /**
+         * Waits for every worker to report its number of analysis threads. A worker with more threads
+         * gets more batches in flight, so that all of its threads have work.
+         */
+        private void awaitWorkers() throws MPIException {
+            for (int i = 1; i < numWorkerProcesses; i++) {
+                MpiChannel.Message hello = channel.receive(MPI.ANY_SOURCE, HELLO_TAG);
+                int threads = hello.content().getInt();
+                int batchesPerThreads = (threads + batchSize - 1) / batchSize;
+                inFlightLimit[hello.getSource()] = Math.max(DISTRIBUTED_IN_FLIGHT, batchesPerThreads + 1);
+                System.out.println("Worker " + hello.getSource() + " ready with " + threads + " threads, "
+                        + inFlightLimit[hello.getSource()] + " batches in flight.");
+            }
+        }
+
+        /**
+         * Receives every result batch that has already arrived and joins its results back to the reviews.
+         *
+         * @return True if at least one batch was received.
+         */
+        private boolean collectResults() throws MPIException {
+            boolean received = false;
+            MpiChannel.Message message;
+            while ((message = channel.poll(MPI.ANY_SOURCE, RESULT_TAG)) != null) {
+                int worker = message.getSource();
+                inFlight[worker]--;
+                received = true;
+
+                List<WireProtocol.ResultItem> results = WireProtocol.decodeResultBatch(message.content());
+                InFlightBatch batch = results.isEmpty() ? null : inFlightBatches.remove(results.get(0).getReviewId());
+                if (batch == null) {
+                    // The other copy of a re-dispatched batch already won
+                    continue;
+                }
+                completeBatch(batch, worker);
+
+                for (WireProtocol.ResultItem result : results) {
+                    PendingReview review = sentReviews.remove(result.getReviewId());
+                    if (review != null) {
+                        if (AsyncLog.sampled()) {
+                            AsyncLog.info(GREEN + "Review and Sentiment (Worker " + worker + "): " + RESET
+                                    + "Review: " + review.review.getReviewText() + " | Sentiment: " + result.getResult().getSentiment());
+                        }
+                        sentimentAggregator.record(review.review, result.getResult());
+                        resultStore.append(review.review, result.getResult());
+                        // Worker clocks are not comparable to the master's, so the analysis is placed right
+                        // before the result arrived and the transfer time counts as queueing
+                        long finishedNanos = System.nanoTime();
+                        analyzedReviewsCounter.increment(review.arrivedNanos, review.parsedNanos,
+                                finishedNanos - result.getAnalysisNanos(), finishedNanos);
                     } else {
-                        System.out.println("No result received from worker " + i);
+                        AsyncLog.warn("Unknown review " + result.getReviewId() + " received from worker " + worker);
                     }
                 }
-            } catch (MPIException e) {
-                e.printStackTrace();
             }
+            return received;
         }
 
-        @Override
-        public void onError(WebSocket webSocket, Throwable error) {
-            System.out.println("WebSocket error: " + error.getMessage());
+        /**
+         * Updates the latency of the worker that returned a batch first. A worker that returned its own
+         * batch in time earns back one batch in flight.
+         */
+        private void completeBatch(InFlightBatch batch, int worker) {
+            long now = System.nanoTime();
+            recordLatency(worker, now - (worker == batch.worker ? batch.sentNanos : batch.speculatedNanos));
+            if (worker == batch.worker) {
+                if (now <= batch.deadlineNanos && lagPenalty[worker] > 0) {
+                    lagPenalty[worker]--;
+                }
+            } else {
+                // The straggler has taken at least this long, which raises its deadline as well
+                recordLatency(batch.worker, now - batch.sentNanos);
+            }
         }
-        public void stopReviewCounter() {
-            analyzedReviewsCounter.stop();
+
+        /**
+         * Smooths the batch latency of a worker and its deviation (RFC 6298).
+         */
+        private void recordLatency(int worker, long nanos) {
+            if (latencyNanos[worker] == 0) {
+                latencyNanos[worker] = nanos;
+                latencyDeviationNanos[worker] = nanos / 2.0;
+            } else {
+                latencyDeviationNanos[worker] = 0.75 * latencyDeviationNanos[worker] + 0.25 * Math.abs(nanos - latencyNanos[worker]);
+                latencyNanos[worker] = 0.875 * latencyNanos[worker] + 0.125 * nanos;
+            }
+        }
+
+        private long deadlineNanos(int worker) {
+            if (latencyNanos[worker] == 0) {
+                return initialDeadlineNanos;
+            }
+            return Math.max(minDeadlineNanos, (long) (latencyNanos[worker] + 4 * latencyDeviationNanos[worker]));
+        }
+
+        /**
+         * Counts every batch that is past its deadline against its worker and sends it once more, to the
+         * least loaded other worker that has a free slot. A batch that finds no free slot is tried again
+         * on the next round.
+         *
+         * @return True if at least one batch was sent again.
+         */
+        private boolean speculateStragglers() throws MPIException {
+            if (!DISTRIBUTED_SPECULATE || inFlightBatches.isEmpty()) {
+                return false;
+            }
+            boolean sent = false;
+            long now = System.nanoTime();
+            for (InFlightBatch batch : inFlightBatches.values()) {
+                if (batch.speculatedNanos != 0 || now < batch.deadlineNanos) {
+                    continue;
+                }
+                if (!batch.missedDeadline) {
+                    batch.missedDeadline = true;
+                    lagPenalty[batch.worker] = Math.min(inFlightLimit[batch.worker] - 1, lagPenalty[batch.worker] + 1);
+                }
+                int target = leastLoadedWorker(batch.worker);
+                if (target < 0) {
+                    continue;
+                }
+                pendingSends.add(channel.send(batch.payload, batch.payload.length, target, WORK_TAG));
+                inFlight[target]++;
+                batch.speculatedNanos = now;
+                sent = true;
+                AsyncLog.info(String.format(Locale.ROOT,
+                        "Batch of %d reviews on worker %d is past its %.1f ms deadline, sent again to worker %d",
+                        batch.size, batch.worker, (batch.deadlineNanos - batch.sentNanos) / 1e6, target));
+            }
+            return sent;
+        }
+
+        /**
+         * Moves the reviews queued by the WebSocket thread into the staging area, assigning their ids, and
+         * applies the latency budget to the staged reviews from the oldest on. Reviews over the budget are
+         * shed or keep the decision of the policy for when they are sent; the first review within the
+         * budget ends the check, as every younger review is within it too.
+         */
+        private void stageReviews() {
+            PendingReview review;
+            while ((review = pendingReviews.poll()) != null) {
+                review.reviewId = nextReviewId++;
+                stagedReviews.add(review);
+            }
+            long now = System.nanoTime();
+            Iterator<PendingReview> iterator = stagedReviews.iterator();
+            while (iterator.hasNext()) {
+                review = iterator.next();
+                if (review.decision != null) {
+                    continue;
+                }
+                if (!admissionController.isOverBudget(now - review.parsedNanos)) {
+                    return;
+                }
+                review.decision = admissionController.admit(now - review.parsedNanos);
+                if (review.decision == AdmissionController.Decision.SHED) {
+                    iterator.remove();
+                    listener.releaseSlot();
+                }
+            }
+        }
+
+        /**
+         * Hands ready batches to the least loaded workers until no batch is ready or every worker is full.
+         * The worker that just returned a result is the least loaded one, so it is refilled first.
+         *
+         * @return True if at least one batch was sent.
+         */
+        private boolean distributeWork() throws MPIException {
+            boolean sent = false;
+            while (batchReady()) {
+                int worker = leastLoadedWorker();
+                if (worker < 0) {
+                    return sent;
+                }
+                sent |= sendBatch(worker);
+            }
+            return sent;
+        }
+
+        private boolean batchReady() {
+            PendingReview oldest = stagedReviews.peek();
+            return oldest != null
+                    && (stagedReviews.size() >= batchSize || System.nanoTime() - oldest.parsedNanos >= batchLingerNanos);
+        }
+
+        /**
+         * Returns the worker with the fewest batches in flight that is below its limit, which is lowered
+         * for a worker that lags behind. Between equally loaded workers the faster one is chosen.
+         */
+        private int leastLoadedWorker() {
+            // Rank 0 is the master, so no worker is left out
+            return leastLoadedWorker(0);
+        }
+
+        /**
+         * Returns the least loaded worker below its limit other than the excluded one, -1 if there is none.
+         */
+        private int leastLoadedWorker(int excluded) {
+            int best = -1;
+            for (int i = 1; i < numWorkerProcesses; i++) {
+                if (i != excluded && inFlight[i] < inFlightLimit[i] - lagPenalty[i]
+                        && (best < 0 || inFlight[i] < inFlight[best]
+                        || (inFlight[i] == inFlight[best] && latencyNanos[i] < latencyNanos[best]))) {
+                    best = i;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Sends the next batch of staged reviews to a worker, leaving out the reviews that are shed.
+         *
+         * @return True if the batch was sent, false if every staged review was shed.
+         */
+        private boolean sendBatch(int worker) throws MPIException {
+            List<WireProtocol.WorkItem> batch = new ArrayList<>(batchSize);
+            long now = System.nanoTime();
+            while (batch.size() < batchSize && !stagedReviews.isEmpty()) {
+                PendingReview review = stagedReviews.poll();
+                listener.releaseSlot();
+                AdmissionController.Decision decision = review.decision != null
+                        ? review.decision : admissionController.admit(now - review.parsedNanos);
+                if (decision == AdmissionController.Decision.SHED) {
+                    continue;
+                }
+                sentReviews.put(review.reviewId, review);
+                batch.add(new WireProtocol.WorkItem(review.reviewId, review.review.getReviewText(),
+                        decision == AdmissionController.Decision.DEGRADE));
+            }
+            if (batch.isEmpty()) {
+                return false;
+            }
+            byte[] payload = WireProtocol.encodeWorkBatch(batch);
+            pendingSends.add(channel.send(payload, payload.length, worker, WORK_TAG));
+            inFlight[worker]++;
+            inFlightBatches.put(batch.get(0).getReviewId(),
+                    new InFlightBatch(worker, payload, batch.size(), now, now + deadlineNanos(worker)));
+            return true;
+        }
+
+        /**
+         * Releases the send requests that have completed, together with their buffers.
+         */
+        private void completeSends() throws MPIException {
+            Iterator<Request> iterator = pendingSends.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().Test() != null) {
+                    iterator.remove();
+                }
+            }
+        }
+
+        private void drainInFlight() throws MPIException {
+            long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+            while (hasInFlight() && System.currentTimeMillis() < deadline) {
+                if (!collectResults()) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+            for (Request request : pendingSends) {
+                request.Wait();
+            }
+            pendingSends.clear();
+        }
+
+        private boolean hasInFlight() {
+            for (int i = 1; i < numWorkerProcesses; i++) {
+                if (inFlight[i] > 0) {
+                    return true;
+                }
+            }
+            return false;
         }
 
         private void sendShutdownSignal() {
             try {
+                byte[] shutdownMessage = MpiChannel.encode("shutdown");
                 for (int i = 1; i < numWorkerProcesses; i++) {
-                    String shutdownMessage = "shutdown";
-                    MPI.COMM_WORLD.Send(shutdownMessage.toCharArray(), 0, shutdownMessage.length(), MPI.CHAR, i, 0);
+                    channel.sendBlocking(shutdownMessage, shutdownMessage.length, i, SHUTDOWN_TAG);
                 }
             } catch (MPIException e) {
                 e.printStackTrace();
@@ -158,78 +679,198 @@ public class Distributed {
         }
     }
 
+    /**
+     * A batch sent to a worker, kept with its payload so it can be sent again if the worker is late.
+     */
+    private static class InFlightBatch {
+        private final int worker;
+        private final byte[] payload;
+        private final int size;
+        private final long sentNanos;
+        private final long deadlineNanos;
+        // When the batch was sent again to another worker, 0 if it was not
+        private long speculatedNanos;
+        // Set once the batch has been counted against its worker for missing the deadline
+        private boolean missedDeadline;
+
+        private InFlightBatch(int worker, byte[] payload, int size, long sentNanos, long deadlineNanos) {
+            this.worker = worker;
+            this.payload = payload;
+            this.size = size;
+            this.sentNanos = sentNanos;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    /**
+     * A review held by the master from the moment it is parsed until its result arrives.
+     * The sequence id is assigned by the scheduler when the review is staged.
+     */
+    private static class PendingReview {
+        private long reviewId;
+        // What the admission controller decided once the review was over the budget, null before that
+        private AdmissionController.Decision decision;
+        private final Review review;
+        private final long arrivedNanos;
+        private final long parsedNanos;
+
+        private PendingReview(Review review, long arrivedNanos, long parsedNanos) {
+            this.review = review;
+            this.arrivedNanos = arrivedNanos;
+            this.parsedNanos = parsedNanos;
+        }
+    }
+
     /**
      * Starts the worker process that continuously listens for review texts from the master process,
      * analyzes their sentiment, and sends the results back to the master.
      * <p>
      * The worker process performs the following:
      * <ul>
-     *     <li>Receives a review text from the master process using MPI.</li>
-     *     <li>Uses {@link SentimentAnalyzer} to analyze the sentiment of the received review.</li>
-     *     <li>Sends the analyzed sentiment, with the review text, back to the master process.</li>
+     *     <li>Tells the master how many analysis threads it runs.</li>
+     *     <li>Receives batches of reviews from the master process using MPI.</li>
+     *     <li>Analyzes the reviews of every batch on a pool of {@code DISTRIBUTED_WORKER_THREADS} threads,
+     *     each with its own {@link SentimentAnalyzer} from a {@link SentimentAnalyzerPool}.</li>
+     *     <li>Sends one packed result with the id, sentiment and analysis time of every review back to the master process.</li>
      * </ul>
-     * This loop runs indefinitely, processing reviews as long as they are received.
+     * With more than one thread the rank is a hybrid MPI and multithreaded worker: one rank per node
+     * uses all of its cores with a single copy of the models. Only the calling thread makes MPI calls,
+     * it keeps receiving new batches while earlier ones are still being analyzed.
+     * This loop runs until a message with the shutdown tag is received.
      * </p>
      *
      * @throws MPIException if an error occurs during MPI communication
      */
     public static class WorkerProcess {
+        private final int threads = Math.max(1, DISTRIBUTED_WORKER_THREADS);
+        private final SentimentAnalyzerPool analyzerPool = new SentimentAnalyzerPool(threads);
+        private final BlockingQueue<byte[]> completedBatches = new LinkedBlockingQueue<>();
+        private int batchesInProgress = 0;
+
         public void start() {
+            ExecutorService executor = Executors.newFixedThreadPool(threads, analyzerPool.threadFactory("mpi-worker"));
             try {
-                SentimentAnalyzer sentimentAnalyzer = new SentimentAnalyzer();
-                while (true) {
-                    char[] reviewBuffer = new char[4096];
-                    MPI.COMM_WORLD.Recv(reviewBuffer, 0, 4096, MPI.CHAR, MASTER, 0);
-
-                    String reviewText = new String(reviewBuffer).trim();
-                    if (reviewText.equals("shutdown")) {
-                        System.out.println("Worker " + MPI.COMM_WORLD.Rank() + " received shutdown signal.");
-                        break;
+                int rank = MPI.COMM_WORLD.Rank();
+                MpiChannel channel = new MpiChannel(MPI.COMM_WORLD.Size());
+                // Models are loaded and the JIT is warm before the master is told the worker is ready
+                Warmup.run(executor, threads, review -> analyzerPool.current().analyze(review));
+                byte[] hello = ByteBuffer.allocate(Integer.BYTES).putInt(threads).array();
+                channel.sendBlocking(hello, hello.length, MASTER, HELLO_TAG);
+                System.out.println("Worker " + rank + " started with " + threads + " analysis threads.");
+
+                boolean shutdown = false;
+                long backoffNanos = IDLE_PARK_NANOS;
+                while (!shutdown || batchesInProgress > 0) {
+                    boolean progress = false;
+                    MpiChannel.Message message;
+                    if (shutdown) {
+                        message = null;
+                    } else if (batchesInProgress == 0) {
+                        // Nothing to send back, so the worker blocks until the master sends something
+                        message = channel.receive(MASTER, MPI.ANY_TAG);
+                    } else {
+                        message = channel.poll(MASTER, MPI.ANY_TAG);
+                    }
+                    if (message != null) {
+                        progress = true;
+                        if (message.getTag() == SHUTDOWN_TAG) {
+                            System.out.println("Worker " + rank + " received shutdown signal.");
+                            shutdown = true;
+                        } else {
+                            analyzeBatch(executor, WireProtocol.decodeWorkBatch(message.content()));
+                        }
                     }
 
-                    if (!reviewText.isEmpty()) {
-                        String sentiment = sentimentAnalyzer.analyzeSentiment(reviewText);
-                        String result = "Review: " + reviewText + " | Sentiment: " + sentiment;
-                        MPI.COMM_WORLD.Send(result.toCharArray(), 0, result.length(), MPI.CHAR, MASTER, 0);
+                    byte[] result = progress ? completedBatches.poll()
+                            : completedBatches.poll(backoffNanos, TimeUnit.NANOSECONDS);
+                    if (result != null) {
+                        progress = true;
                     }
+                    while (result != null) {
+                        channel.sendBlocking(result, result.length, MASTER, RESULT_TAG);
+                        batchesInProgress--;
+                        result = completedBatches.poll();
+                    }
+                    // A completed batch wakes the worker right away, only new work from the master waits for the backoff
+                    backoffNanos = progress ? IDLE_PARK_NANOS : Math.min(MAX_WORKER_BACKOFF_NANOS, backoffNanos * 2);
                 }
             } catch (MPIException e) {
                 e.printStackTrace();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                executor.shutdownNow();
             }
         }
-    }
-
-    public static void shutdown() {
-        if (masterListener != null) {
-            masterListener.stopReviewCounter();
-        }
 
-        WebSocket webSocket = webSocketRef.get();
-        if (webSocket != null) {
-            webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "Shutting down").thenRun(() -> {
-                System.out.println("WebSocket closed");
-            });
-        }
-
-        try {
-            if (MPI.COMM_WORLD.Rank() == MASTER) {
-                System.out.println("Master is shutting down...");
-                masterListener.sendShutdownSignal();
-
-            } else {
-                System.out.println("Worker " + MPI.COMM_WORLD.Rank() + " is shutting down...");
+        /**
+         * Analyzes the reviews of a batch in parallel. When the last review is done, the packed result
+         * is queued for the MPI thread to send. A review whose analysis fails, even with an Error that
+         * then ends its thread, is returned as Neutral without sentence scores, so the batch always
+         * completes and the master never waits for it.
+         */
+        private void analyzeBatch(ExecutorService executor, List<WireProtocol.WorkItem> batch) {
+            batchesInProgress++;
+            if (batch.isEmpty()) {
+                completedBatches.offer(WireProtocol.encodeResultBatch(List.of()));
+                return;
+            }
+            WireProtocol.ResultItem[] results = new WireProtocol.ResultItem[batch.size()];
+            AtomicInteger remaining = new AtomicInteger(batch.size());
+            for (int i = 0; i < results.length; i++) {
+                int index = i;
+                WireProtocol.WorkItem work = batch.get(i);
+                executor.execute(() -> {
+                    long startNanos = System.nanoTime();
+                    SentimentResult sentiment = null;
+                    try {
+                        sentiment = work.isDegraded()
+                                ? analyzerPool.current().analyzeDegraded(work.getReviewText())
+                                : analyzerPool.current().analyze(work.getReviewText());
+                    } catch (RuntimeException e) {
+                        AsyncLog.error("Error analyzing review " + work.getReviewId() + ": " + e);
+                    } finally {
+                        if (sentiment == null) {
+                            sentiment = new SentimentResult(2, new byte[0]);
+                        }
+                        results[index] = new WireProtocol.ResultItem(work.getReviewId(), sentiment, System.nanoTime() - startNanos);
+                        if (remaining.decrementAndGet() == 0) {
+                            completedBatches.offer(WireProtocol.encodeResultBatch(Arrays.asList(results)));
+                        }
+                    }
+                });
             }
-
-            MPI.Finalize();
-        } catch (MPIException e) {
-            e.printStackTrace();
         }
+    }
 
-        if (webSocketThread != null) {
-            webSocketThread.interrupt();
+    public static void shutdown() {
+        if (ingestManager != null) {
+            ingestManager.stop();
+        }
+        if (masterScheduler != null) {
+            // The scheduler thread sends the shutdown signal and finalizes MPI itself
+            System.out.println("Master is shutting down...");
+            masterScheduler.stop();
             try {
-                webSocketThread.join();
+                masterFinished.await(DRAIN_TIMEOUT_MILLIS * 2, TimeUnit.MILLISECONDS);
             } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // The results collected while the in-flight batches drained are still counted and stored
+            if (masterListener != null) {
+                masterListener.stopReviewCounter();
+            }
+            if (sentimentAggregator != null) {
+                sentimentAggregator.stop();
+            }
+            if (resultStore != null) {
+                resultStore.close();
+            }
+        } else {
+            try {
+                System.out.println("Worker " + MPI.COMM_WORLD.Rank() + " is shutting down...");
+                MPI.Finalize();
+            } catch (MPIException e) {
                 e.printStackTrace();
             }
         }
@@ -1,13 +1,24 @@
 package ImplementationModes;
 
+import Utils.AdmissionController;
+import Utils.AsyncLog;
+import Utils.FrameRecorder;
+import Utils.IngestManager;
 import Utils.MessageParser;
+import Utils.PoolSizeController;
+import Utils.ResultStore;
+import Utils.Review;
 import Utils.ReviewCounter;
-import Utils.SentimentAnalyzer;
-import Utils.WebSocketConnection;
+import Utils.SentimentAggregator;
+import Utils.SentimentAnalyzerPool;
+import Utils.SentimentResult;
+import Utils.Warmup;
 
 import java.net.http.WebSocket;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static Utils.MessageParser.extractTopics;
 import static Utils.Config.*;
@@ -15,15 +26,30 @@ import static Utils.Config.*;
  * Manages a parallel sentiment analysis system using WebSocket for real-time data.
  *
  * Functionality:
- * - Connects to a WebSocket server and subscribes to one or several topics.
- * - Analyzes review sentiments in parallel using a thread pool.
+ * - Connects to a WebSocket server with one connection per topic and merges them into one work queue.
+ * - Analyzes review sentiments in parallel using a thread pool, whose size is tuned to the best throughput.
+ * - Sheds or degrades reviews that waited in the queue longer than the latency budget.
  * - Tracks and logs the number of reviews analyzed per second.
+ * - Aggregates the sentiment per topic and per product and serves it over HTTP.
+ * - Stores the analyzed reviews in a {@link ResultStore} when one is configured.
  */
 public class Parallel{
-    private static SentimentAnalyzer sentimentAnalyzer;
-    private static final ExecutorService threadPool = createThreadPool();
+    // The most threads the pool may grow to: the CPU limit of the process, or POOL_MAX_SIZE if set
+    private static final int maxPoolSize = POOL_MAX_SIZE > 0 ? POOL_MAX_SIZE : PoolSizeController.cpuLimit();
+    // One analyzer for every thread the pool may grow to
+    private static final SentimentAnalyzerPool analyzerPool = new SentimentAnalyzerPool(maxPoolSize);
+    // The work queue holds every frame the listener may have in flight, so the credit is its only limit
+    private static final int queueCapacity = Math.max(1, PARALLEL_CREDIT);
+    private static final ThreadPoolExecutor threadPool = createThreadPool();
+    private static final PoolSizeController poolSizeController = new PoolSizeController(threadPool, 1, maxPoolSize);
     private static final ReviewCounter analyzedReviewsCounter = new ReviewCounter(P_RESULT_FILE);
-    private static AtomicReference<WebSocket> webSocketRef = new AtomicReference<>();
+    private static final FrameRecorder frameRecorder = FrameRecorder.fromConfig();
+    private static final SentimentAggregator sentimentAggregator = new SentimentAggregator();
+    private static final ResultStore resultStore = ResultStore.fromConfig();
+    private static final AdmissionController admissionController = new AdmissionController();
+    private static IngestManager ingestManager;
+    // How long the shutdown hook waits for the queued reviews to be analyzed
+    private static final long SHUTDOWN_DRAIN_MILLIS = 5_000;
 
     /**
      * Connects to the WebSocket server and starts listening for messages.
@@ -31,94 +57,225 @@ public class Parallel{
      * @param message Initial subscription message containing topics.
      */
     public static void connectAndSubscribe(String message) {
-        sentimentAnalyzer = new SentimentAnalyzer();
-        WebSocketConnection connection = new WebSocketConnection(WEB_SOCKET_URL);
+        String[] topics = extractTopics(message);
+        int connections = INGEST_CONNECTIONS_PER_TOPIC <= 0 ? 1 : topics.length * INGEST_CONNECTIONS_PER_TOPIC;
+        ingestManager = new IngestManager(WEB_SOCKET_URL, topics, INGEST_CONNECTIONS_PER_TOPIC, new WebSocketListener(connections));
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            WebSocket webSocket = webSocketRef.get();
-            if (webSocket != null) {
-                synchronized (webSocketRef) {
-                    try {
-                        System.out.println("Closing WebSocket connection...");
-                        webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "Shutdown").join();
-                    } catch (Exception e) {
-                        System.err.println("Error closing WebSocket connection: " + e.getMessage());
-                    }
+            System.out.println("Closing WebSocket connections...");
+            ingestManager.stop();
+            poolSizeController.stop();
+            frameRecorder.close();
+            // The reviews already queued are analyzed and stored before the store is closed
+            threadPool.shutdown();
+            try {
+                if (!threadPool.awaitTermination(SHUTDOWN_DRAIN_MILLIS, TimeUnit.MILLISECONDS)) {
+                    System.out.println("Thread pool did not drain in time, " + threadPool.getQueue().size() + " reviews left.");
                 }
-            } else {
-                System.out.println("No WebSocket to close.");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+            // The metrics writer runs on a daemon thread, the records still queued are written before the JVM exits
+            analyzedReviewsCounter.stop();
+            sentimentAggregator.stop();
+            resultStore.close();
         }));
+        analyzedReviewsCounter.setGauges(
+                () -> threadPool.getQueue().size(),
+                threadPool::getActiveCount,
+                () -> (double) threadPool.getActiveCount() / threadPool.getCorePoolSize());
+        analyzedReviewsCounter.setAdmissionController(admissionController);
         analyzedReviewsCounter.startCounting();
-        connection.connect(new WebSocketListener(message));
+        sentimentAggregator.start();
+        // Every worker thread loads its models and warms up before any topic is subscribed
+        Warmup.run(threadPool, threadPool.getCorePoolSize(), review -> analyzerPool.current().analyze(review));
+        ingestManager.start();
+        poolSizeController.start();
     }
 
     /**
      * WebSocket listener for handling incoming messages and processing sentiment analysis.
      */
     public static class WebSocketListener implements WebSocket.Listener {
-        private final String message;
-        public WebSocketListener(String message){
-            this.message = message;
+        private final int totalCredit;
+        private final int credit;
+        // Frames requested from the connections whose reviews are not done yet, never more than totalCredit
+        private final AtomicInteger grantedCredit = new AtomicInteger();
+        // The frames requested from every open connection that have not arrived yet
+        private final Map<WebSocket, AtomicInteger> unusedCredit = new ConcurrentHashMap<>();
+        // Open connections waiting for a frame of credit, in the order they gave their credit back
+        private final Queue<WebSocket> waitingConnections = new ConcurrentLinkedQueue<>();
+        /**
+         * @param connections The number of connections that share the work queue.
+         */
+        public WebSocketListener(int connections){
+            // Never let more frames in flight over all connections than the work queue can hold
+            this.totalCredit = queueCapacity;
+            this.credit = Math.max(1, totalCredit / Math.max(1, connections));
+            if (connections > totalCredit) {
+                System.out.println(connections + " connections share a credit of " + totalCredit
+                        + " frames, the connections without credit wait for their turn.");
+            }
         }
         @Override
         public void onOpen(WebSocket webSocket) {
             System.out.println("WebSocket opened");
-            webSocketRef.set(webSocket);
-            String[] topics = extractTopics(message);
-            synchronized (webSocketRef) {
-                for (String topic : topics) {
-                    webSocket.sendText("topic:" + topic.trim(), true);
+            unusedCredit.put(webSocket, new AtomicInteger());
+            // Hand out the connection's share of the credit up front, if it is not all taken
+            if (grant(webSocket, credit) == 0) {
+                waitingConnections.offer(webSocket);
+            }
+        }
+
+        /**
+         * Gives back the credit of a frame once its review is done. The connection queues up behind the
+         * connections already waiting, and the credit goes to the one that has waited longest.
+         */
+        private void returnCredit(WebSocket webSocket) {
+            grantedCredit.decrementAndGet();
+            if (unusedCredit.containsKey(webSocket)) {
+                waitingConnections.offer(webSocket);
+            }
+            grantWaiting();
+        }
+
+        /**
+         * Gives the credit that is not granted to the waiting connections, one frame each.
+         */
+        private void grantWaiting() {
+            while (grantedCredit.get() < totalCredit) {
+                WebSocket next = waitingConnections.poll();
+                if (next == null) {
+                    return;
+                }
+                if (unusedCredit.containsKey(next) && grant(next, 1) == 0) {
+                    // Another thread took the credit in the meantime
+                    waitingConnections.offer(next);
+                    return;
                 }
             }
-            webSocket.request(1);
+        }
+
+        /**
+         * Requests up to the given number of frames from a connection, as far as the total credit allows.
+         *
+         * @return The number of frames requested.
+         */
+        private int grant(WebSocket webSocket, int wanted) {
+            AtomicInteger unused = unusedCredit.get(webSocket);
+            while (unused != null) {
+                int granted = grantedCredit.get();
+                int frames = Math.min(wanted, totalCredit - granted);
+                if (frames <= 0) {
+                    return 0;
+                }
+                if (grantedCredit.compareAndSet(granted, granted + frames)) {
+                    unused.addAndGet(frames);
+                    webSocket.request(frames);
+                    return frames;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Takes back the credit a closed connection did not use, so the other connections can have it.
+         */
+        private void releaseCredit(WebSocket webSocket) {
+            AtomicInteger unused = unusedCredit.remove(webSocket);
+            if (unused != null) {
+                grantedCredit.addAndGet(-unused.get());
+                grantWaiting();
+            }
         }
 
         @Override
         public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
-            String reviewText = MessageParser.extractReviewText(data.toString());
-            System.out.println("Review: "+reviewText);
-            if (reviewText != null) {
-                threadPool.submit(() -> {
-                    String sentiment = sentimentAnalyzer.analyzeSentiment(reviewText);
-                    System.out.println(GREEN + "ImplementationModes.Parallel Sentiment Analysis: " + RESET + sentiment + GREEN + " Review text: " +RESET + reviewText);
-                    analyzedReviewsCounter.increment();
-
-                });
+            long arrivedNanos = System.nanoTime();
+            AtomicInteger unused = unusedCredit.get(webSocket);
+            if (unused != null) {
+                unused.decrementAndGet();
+            }
+            Review review = MessageParser.parseReview(data);
+            long parsedNanos = System.nanoTime();
+            frameRecorder.record(data, review == null ? null : review.getTopic(), arrivedNanos);
+            if (review != null) {
+                if (AsyncLog.isEnabled(AsyncLog.Level.DEBUG)) {
+                    AsyncLog.debug("Review: "+review.getReviewText());
+                }
+                try {
+                    threadPool.execute(() -> {
+                        try {
+                            long startedNanos = System.nanoTime();
+                            AdmissionController.Decision decision = admissionController.admit(startedNanos - parsedNanos);
+                            if (decision == AdmissionController.Decision.SHED) {
+                                return;
+                            }
+                            SentimentResult result = decision == AdmissionController.Decision.DEGRADE
+                                    ? analyzerPool.current().analyzeDegraded(review.getReviewText())
+                                    : analyzerPool.current().analyze(review.getReviewText());
+                            long finishedNanos = System.nanoTime();
+                            if (AsyncLog.sampled()) {
+                                AsyncLog.info(GREEN + "ImplementationModes.Parallel Sentiment Analysis: " + RESET + result.getSentiment() + GREEN + " Review text: " +RESET + review.getReviewText());
+                            }
+                            sentimentAggregator.record(review, result);
+                            resultStore.append(review, result);
+                            poolSizeController.record(startedNanos - parsedNanos);
+                            analyzedReviewsCounter.increment(arrivedNanos, parsedNanos, startedNanos, finishedNanos);
+                        } finally {
+                            returnCredit(webSocket);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    AsyncLog.warn("Review rejected by the thread pool: " + e.getMessage());
+                    returnCredit(webSocket);
+                }
             } else {
-                System.out.println("Review text not found in the message.");
+                AsyncLog.warn("Review text not found in the message.");
+                returnCredit(webSocket);
             }
-            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            releaseCredit(webSocket);
             return null;
         }
 
         @Override
         public void onError(WebSocket webSocket, Throwable error) {
             System.out.println("WebSocket error: " + error.getMessage());
+            releaseCredit(webSocket);
         }
     }
 
     /**
-     * Creates a thread pool with a core and maximum pool size based on available processors.
+     * Creates the thread pool with one thread per CPU the process may use, leaving one core for ingest.
+     * The {@link PoolSizeController} later resizes it between 1 thread and the CPU limit, which respects
+     * the CPU quota of a container, or {@code POOL_MAX_SIZE} if set.
      *
-     * The pool uses a `SynchronousQueue` for task handling and `CallerRunsPolicy` for rejected tasks.
+     * The pool uses a bounded `ArrayBlockingQueue` for task handling, sized to the credit of the WebSocket
+     * listener. The listener never has more frames in flight than the credit, so tasks are not rejected
+     * and are never run on the WebSocket thread. Each worker thread gets its own analyzer from an analyzer pool of the same size.
      *
-     * @return An `ExecutorService` instance, specifically a `ThreadPoolExecutor`.
+     * @return A `ThreadPoolExecutor` instance.
      */
-    private static ExecutorService createThreadPool() {
+    private static ThreadPoolExecutor createThreadPool() {
         int availableProcessors = Runtime.getRuntime().availableProcessors();
-        System.out.println("Available processors: "+availableProcessors);
-        int corePoolSize = availableProcessors - 1;
-        int maxPoolSize = availableProcessors * 2 - 1;
+        int cpuLimit = PoolSizeController.cpuLimit();
+        System.out.println("Available processors: "+availableProcessors+", CPU limit: "+cpuLimit);
+        int poolSize = Math.min(maxPoolSize, Math.max(1, cpuLimit - 1));
 
-        System.out.println("Max pool size: "+maxPoolSize);
+        System.out.println("Pool size: "+poolSize+" (at most "+maxPoolSize+"), queue capacity and credit: "+queueCapacity);
 
         return new ThreadPoolExecutor(
-                corePoolSize,
-                maxPoolSize,
+                poolSize,
+                poolSize,
                 60L,
                 TimeUnit.SECONDS,
-                new SynchronousQueue<>(),
-                new ThreadPoolExecutor.CallerRunsPolicy()
+                new ArrayBlockingQueue<>(queueCapacity),
+                analyzerPool.threadFactory("sentiment-worker"),
+                new ThreadPoolExecutor.AbortPolicy()
         );
     }
 }
@@ -1,13 +1,21 @@
 package ImplementationModes;
 
+import Utils.AsyncLog;
+import Utils.FrameRecorder;
+import Utils.IngestManager;
 import Utils.MessageParser;
+import Utils.ResultStore;
+import Utils.Review;
 import Utils.ReviewCounter;
+import Utils.SentimentAggregator;
 import Utils.SentimentAnalyzer;
-import Utils.WebSocketConnection;
+import Utils.SentimentResult;
+import Utils.Warmup;
 
 import java.net.http.WebSocket;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletionStage;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import static Utils.MessageParser.extractTopics;
 import  static Utils.Config.*;
@@ -16,9 +24,11 @@ import  static Utils.Config.*;
  * Manages a sequential sentiment analysis system using WebSocket for real-time data.
  *
  * Functionality:
- * - Connects to a WebSocket server and subscribes to specified topics.
- * - Performs sentiment analysis on incoming review messages sequentially.
+ * - Connects to a WebSocket server with one connection per topic.
+ * - Merges the reviews of all connections into one queue, analyzed one at a time by a single consumer thread.
  * - Tracks and logs the number of reviews analyzed per second.
+ * - Aggregates the sentiment per topic and per product and serves it over HTTP.
+ * - Stores the analyzed reviews in a {@link ResultStore} when one is configured.
  *
  * Usage:
  * - Invoke `connectAndSubscribe(String message)` to start the connection and processing.
@@ -26,64 +36,112 @@ import  static Utils.Config.*;
 public class Sequential {
     private static SentimentAnalyzer sentimentAnalyzer;
     private static final ReviewCounter analyzedReviewsCounter = new ReviewCounter(S_RESULT_FILE);
-    private static AtomicReference<WebSocket> webSocketRef = new AtomicReference<>();
+    private static final FrameRecorder frameRecorder = FrameRecorder.fromConfig();
+    private static final SentimentAggregator sentimentAggregator = new SentimentAggregator();
+    private static final ResultStore resultStore = ResultStore.fromConfig();
+    // Every connection has a credit of one frame, so the queue never holds more reviews than there are connections
+    private static final BlockingQueue<QueuedReview> reviewQueue = new LinkedBlockingQueue<>();
+    private static volatile boolean analyzing;
+    private static IngestManager ingestManager;
+    private static Thread consumer;
+    // Queued by the shutdown hook, the consumer stops once it has analyzed the reviews queued before it
+    private static final QueuedReview STOP = new QueuedReview(null, null, 0, 0);
+    // How long the shutdown hook waits for the queued reviews to be analyzed
+    private static final long SHUTDOWN_DRAIN_MILLIS = 5_000;
     /**
      * Connects to the WebSocket server and subscribes to topics specified in the provided message.
-     * Initializes the sentiment analyzer and sets up a shutdown hook to close the WebSocket connection.
+     * Initializes the sentiment analyzer, starts the consumer thread and sets up a shutdown hook to
+     * close the WebSocket connections.
      *
      * @param message Subscription message containing the topics to be analyzed.
      */
     public static void connectAndSubscribe(String message) {
         sentimentAnalyzer = new SentimentAnalyzer();
-        WebSocketConnection connection = new WebSocketConnection(WEB_SOCKET_URL);
+        // The models are loaded and the JIT is warm before any topic is subscribed
+        Warmup.run(sentimentAnalyzer::analyze);
+        ingestManager = new IngestManager(WEB_SOCKET_URL, extractTopics(message), INGEST_CONNECTIONS_PER_TOPIC, new WebSocketListener());
+        // Started before the shutdown hook is registered, which waits for it to drain the queue
+        consumer = new Thread(Sequential::analyzeReviews, "sequential-analyzer");
+        consumer.setDaemon(true);
+        consumer.start();
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            WebSocket webSocket = webSocketRef.get();
-            if (webSocket != null) {
-                try {
-                    System.out.println("Closing WebSocket connection...");
-                    webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "Shutdown").join();
-                } catch (Exception e) {
-                    System.err.println("Error closing WebSocket connection: " + e.getMessage());
-                }
-            } else {
-                System.out.println("No WebSocket to close.");
+            System.out.println("Closing WebSocket connections...");
+            ingestManager.stop();
+            frameRecorder.close();
+            reviewQueue.offer(STOP);
+            try {
+                consumer.join(SHUTDOWN_DRAIN_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+            if (consumer.isAlive()) {
+                System.out.println("Review queue did not drain in time, " + reviewQueue.size() + " reviews left.");
+            }
+            // The metrics writer runs on a daemon thread, the records still queued are written before the JVM exits
+            analyzedReviewsCounter.stop();
+            sentimentAggregator.stop();
+            resultStore.close();
         }));
+        analyzedReviewsCounter.setGauges(reviewQueue::size, () -> analyzing ? 1 : 0, () -> analyzing ? 1.0 : 0.0);
         analyzedReviewsCounter.startCounting();
-        connection.connect(new WebSocketListener(message));
+        sentimentAggregator.start();
+        ingestManager.start();
     }
     /**
-     * WebSocket listener that handles incoming messages and performs sentiment analysis.
+     * Analyzes the queued reviews one at a time and gives the credit back to their connection.
      */
-    public static class WebSocketListener implements WebSocket.Listener {
-        private final String message;
-        public WebSocketListener(String message) {
-            this.message = message;
+    private static void analyzeReviews() {
+        try {
+            while (true) {
+                QueuedReview review = reviewQueue.take();
+                if (review == STOP) {
+                    return;
+                }
+                analyzing = true;
+                try {
+                    long startedNanos = System.nanoTime();
+                    SentimentResult result = sentimentAnalyzer.analyze(review.review.getReviewText());
+                    long finishedNanos = System.nanoTime();
+                    if (AsyncLog.sampled()) {
+                        AsyncLog.info(GREEN + "ImplementationModes.Sequential Sentiment Analysis: " + RESET + result.getSentiment() + GREEN + " Review text: " +RESET + review.review.getReviewText());
+                    }
+                    sentimentAggregator.record(review.review, result);
+                    resultStore.append(review.review, result);
+                    analyzedReviewsCounter.increment(review.arrivedNanos, review.parsedNanos, startedNanos, finishedNanos);
+                } finally {
+                    analyzing = false;
+                    review.webSocket.request(1);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+    }
+    /**
+     * WebSocket listener that extracts the reviews of all connections and queues them for analysis.
+     */
+    public static class WebSocketListener implements WebSocket.Listener {
         @Override
         public void onOpen(WebSocket webSocket) {
             System.out.println("WebSocket opened");
-            webSocketRef.set(webSocket);
-            String[] topics = extractTopics(message);
-
-            for (String topic : topics) {
-                webSocket.sendText("topic:" + topic.trim(), true);
-            }
             webSocket.request(1);
         }
 
         @Override
         public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
-            String reviewText = MessageParser.extractReviewText(data.toString());
-            System.out.println("Review: "+ reviewText);
-            if (reviewText != null) {
-                String sentiment = sentimentAnalyzer.analyzeSentiment(reviewText);
-                System.out.println(GREEN + "ImplementationModes.Sequential Sentiment Analysis: " + RESET + sentiment + GREEN + " Review text: " +RESET + reviewText);
-                analyzedReviewsCounter.increment();
+            long arrivedNanos = System.nanoTime();
+            Review review = MessageParser.parseReview(data);
+            long parsedNanos = System.nanoTime();
+            frameRecorder.record(data, review == null ? null : review.getTopic(), arrivedNanos);
+            if (review != null) {
+                if (AsyncLog.isEnabled(AsyncLog.Level.DEBUG)) {
+                    AsyncLog.debug("Review: "+ review.getReviewText());
+                }
+                reviewQueue.offer(new QueuedReview(webSocket, review, arrivedNanos, parsedNanos));
             } else {
-                System.out.println("Review text not found in the message.");
+                AsyncLog.warn("Review text not found in the message.");
+                webSocket.request(1);
             }
-            webSocket.request(1);
             return null;
         }
 
@@ -92,4 +150,20 @@ public class Sequential {
             System.out.println("WebSocket error: " + error.getMessage());
         }
     }
-}
\ No newline at end of file
+    /**
+     * A review waiting for the consumer thread, with the connection whose credit it holds.
+     */
+    private static class QueuedReview {
+        private final WebSocket webSocket;
+        private final Review review;
+        private final long arrivedNanos;
+        private final long parsedNanos;
+
+        private QueuedReview(WebSocket webSocket, Review review, long arrivedNanos, long parsedNanos) {
+            this.webSocket = webSocket;
+            this.review = review;
+            this.arrivedNanos = arrivedNanos;
+            this.parsedNanos = parsedNanos;
+        }
+    }
+}
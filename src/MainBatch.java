@@ -0,0 +1,47 @@
+import ImplementationModes.Batch;
+
+import java.io.IOException;
+
+public class MainBatch {
+    public static void main(String[] args) {
+        // Default values
+        String input = null;
+        String output = null;
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+        // Process command-line arguments
+        for (String arg : args) {
+            if (arg.startsWith("input=")) {
+                input = arg.substring("input=".length()).trim();
+            } else if (arg.startsWith("output=")) {
+                output = arg.substring("output=".length()).trim();
+            } else if (arg.startsWith("threads=")) {
+                try {
+                    threads = Integer.parseInt(arg.substring("threads=".length()).trim());
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid threads value. Please enter a valid number for threads.");
+                    return;
+                }
+            } else {
+                System.out.println("Unknown argument: " + arg);
+                return;
+            }
+        }
+
+        if (input == null || threads < 1) {
+            System.out.println("Please enter an input file of JSON-lines review messages.");
+            System.out.println("Example: input=reviews.jsonl output=reviews_sentiment.jsonl threads=8");
+            return;
+        }
+        if (output == null) {
+            output = input.replaceFirst("\\.jsonl$", "") + "_sentiment.jsonl";
+        }
+
+        try {
+            Batch.analyzeFile(input, output, threads);
+        } catch (IOException e) {
+            System.out.println("Error analyzing " + input + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
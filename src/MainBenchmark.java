@@ -0,0 +1,157 @@
+import Benchmarks.MicroBenchmark;
+import Benchmarks.ReviewCorpus;
+import Utils.MessageParser;
+import Utils.SentimentAnalyzer;
+import Utils.SentimentCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class MainBenchmark {
+    private static final Map<String, String> TOPICS_BY_BUCKET = Map.of(
+            "short", "music",
+            "medium", "music, sport books",
+            "long", "music sport books movies games, electronics toys garden kitchen,automotive");
+
+    public static void main(String[] args) throws IOException {
+        // Default values
+        String benchmarks = "parser,topics,analyzer";
+        String corpus = "corpus";
+        String output = "benchmark_results.jsonl";
+        String baseline = null;
+        double threshold = 10.0;
+        int warmup = 5;
+        int rounds = 10;
+        long roundMillis = 200;
+        boolean cache = false;
+
+        // Process command-line arguments
+        for (String arg : args) {
+            try {
+                if (arg.startsWith("benchmarks=")) {
+                    benchmarks = arg.substring("benchmarks=".length()).trim();
+                } else if (arg.startsWith("corpus=")) {
+                    corpus = arg.substring("corpus=".length()).trim();
+                } else if (arg.startsWith("output=")) {
+                    output = arg.substring("output=".length()).trim();
+                } else if (arg.startsWith("baseline=")) {
+                    baseline = arg.substring("baseline=".length()).trim();
+                } else if (arg.startsWith("threshold=")) {
+                    threshold = Double.parseDouble(arg.substring("threshold=".length()).trim());
+                } else if (arg.startsWith("warmup=")) {
+                    warmup = Integer.parseInt(arg.substring("warmup=".length()).trim());
+                } else if (arg.startsWith("rounds=")) {
+                    rounds = Integer.parseInt(arg.substring("rounds=".length()).trim());
+                } else if (arg.startsWith("roundMillis=")) {
+                    roundMillis = Long.parseLong(arg.substring("roundMillis=".length()).trim());
+                } else if (arg.startsWith("cache=")) {
+                    cache = Boolean.parseBoolean(arg.substring("cache=".length()).trim());
+                } else {
+                    System.out.println("Unknown argument: " + arg);
+                    printUsage();
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid number in argument: " + arg);
+                return;
+            }
+        }
+
+        MicroBenchmark harness = new MicroBenchmark(warmup, Math.max(1, rounds), roundMillis);
+        List<MicroBenchmark.Result> results = new ArrayList<>();
+        List<String> selected = List.of(benchmarks.split("[,\\s]+"));
+        SentimentAnalyzer analyzer = null;
+        if (selected.contains("analyzer")) {
+            // The sentence cache would turn every measured analyzer call into a cache hit, and sentences
+            // scored on the sentence pool would be left out of the allocation of the measuring thread
+            analyzer = new SentimentAnalyzer(cache ? SentimentAnalyzer.getSentenceCache() : new SentimentCache(0), false);
+        }
+
+        for (String bucket : ReviewCorpus.BUCKETS) {
+            List<String> frames = ReviewCorpus.load(corpus, bucket);
+            if (selected.contains("parser")) {
+                results.add(print(harness.run("MessageParser.extractReviewText", bucket, frames, MessageParser::extractReviewText)));
+                // The listeners parse the array-backed buffer the FrameAssembler hands over, as in onText
+                List<CharBuffer> buffers = frames.stream().map(frame -> CharBuffer.wrap(frame.toCharArray())).collect(Collectors.toList());
+                results.add(print(harness.run("MessageParser.parseReview", bucket, buffers, MessageParser::parseReview)));
+            }
+            if (selected.contains("topics")) {
+                List<String> topics = List.of(TOPICS_BY_BUCKET.get(bucket));
+                results.add(print(harness.run("MessageParser.extractTopics", bucket, topics, MessageParser::extractTopics)));
+            }
+            if (analyzer != null) {
+                List<String> reviews = frames.stream().map(MessageParser::extractReviewText).collect(Collectors.toList());
+                results.add(print(harness.run("SentimentAnalyzer.analyzeSentiment", bucket, reviews, analyzer::analyzeSentiment)));
+            }
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8)) {
+            for (MicroBenchmark.Result result : results) {
+                writer.write(result.toJson());
+                writer.newLine();
+            }
+        }
+        System.out.println("Results written to " + output);
+
+        if (baseline != null && !compareWithBaseline(results, baseline, threshold)) {
+            System.exit(1);
+        }
+    }
+
+    private static MicroBenchmark.Result print(MicroBenchmark.Result result) {
+        System.out.println(result);
+        return result;
+    }
+
+    /**
+     * Compares the results with a previous results file.
+     *
+     * @return False if any benchmark got slower or allocates more than the threshold percentage.
+     */
+    private static boolean compareWithBaseline(List<MicroBenchmark.Result> results, String baselineFile, double threshold) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, JsonNode> baseline = new HashMap<>();
+        for (String line : Files.readAllLines(Paths.get(baselineFile), StandardCharsets.UTF_8)) {
+            if (!line.isBlank()) {
+                JsonNode node = objectMapper.readTree(line);
+                baseline.put(node.get("benchmark").asText() + "/" + node.get("bucket").asText(), node);
+            }
+        }
+
+        boolean passed = true;
+        for (MicroBenchmark.Result result : results) {
+            JsonNode previous = baseline.get(result.getKey());
+            if (previous == null) {
+                continue;
+            }
+            double timeChange = percentChange(previous.get("nanosPerOp").asDouble(), result.getNanosPerOperation());
+            double allocationChange = percentChange(previous.get("bytesPerOp").asDouble(), result.getBytesPerOperation());
+            if (timeChange > threshold || allocationChange > threshold) {
+                System.out.printf("REGRESSION %s: time %+.1f%%, allocation %+.1f%%%n", result.getKey(), timeChange, allocationChange);
+                passed = false;
+            }
+        }
+        System.out.println(passed ? "No regressions above " + threshold + "% against " + baselineFile : "Regressions found against " + baselineFile);
+        return passed;
+    }
+
+    private static double percentChange(double before, double after) {
+        return before > 0 ? (after - before) / before * 100.0 : 0.0;
+    }
+
+    private static void printUsage() {
+        System.out.println("Options: benchmarks=parser,topics,analyzer corpus=corpus output=benchmark_results.jsonl");
+        System.out.println("         baseline=<previous results> threshold=10 warmup=5 rounds=10 roundMillis=200 cache=false");
+    }
+}
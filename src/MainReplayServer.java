@@ -0,0 +1,123 @@
+import Utils.FrameLogReader;
+import Utils.FrameRecorder;
+import Utils.ReplayServer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class MainReplayServer {
+    public static void main(String[] args) {
+        // Default values
+        int port = 8080;
+        String corpus = "corpus";
+        String rate = "fixed:100";
+        String mix = "";
+
+        // Process command-line arguments
+        for (String arg : args) {
+            if (arg.startsWith("port=")) {
+                try {
+                    port = Integer.parseInt(arg.substring("port=".length()).trim());
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid port value. Please enter a valid number for port.");
+                    return;
+                }
+            } else if (arg.startsWith("corpus=")) {
+                corpus = arg.substring("corpus=".length()).trim();
+            } else if (arg.startsWith("rate=")) {
+                rate = arg.substring("rate=".length()).trim();
+            } else if (arg.startsWith("mix=")) {
+                mix = arg.substring("mix=".length()).trim();
+            } else {
+                System.out.println("Unknown argument: " + arg);
+                printUsage();
+                return;
+            }
+        }
+
+        try {
+            ReplayServer server = new ReplayServer(port, loadFrames(corpus), parseMix(mix), ReplayServer.Rate.parse(rate));
+            server.start();
+            System.out.println("Run the modes with -Dwebsocket.url=ws://localhost:" + port + "/sentiment");
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                System.out.println("Replay server sent " + server.getSentFrames() + " frames.");
+                server.stop();
+            }));
+            Thread.currentThread().join();
+        } catch (IOException e) {
+            System.out.println("Error starting replay server: " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.out.println("Invalid argument: " + e.getMessage());
+            printUsage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Loads the frames of a corpus file, of every .jsonl file in a corpus directory or of a recorded frame log.
+     */
+    private static List<String> loadFrames(String corpus) throws IOException {
+        Path path = Paths.get(corpus);
+        if (Files.exists(path.resolve(FrameRecorder.INDEX_FILE))) {
+            return loadRecording(corpus);
+        }
+        List<Path> files = new ArrayList<>();
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> stream = Files.list(path)) {
+                stream.filter(file -> file.toString().endsWith(".jsonl")).sorted().forEach(files::add);
+            }
+        } else {
+            files.add(path);
+        }
+        List<String> frames = new ArrayList<>();
+        for (Path file : files) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    frames.add(line);
+                }
+            }
+        }
+        System.out.println("Loaded " + frames.size() + " frames from " + files.size() + " file(s).");
+        return frames;
+    }
+
+    private static List<String> loadRecording(String directory) throws IOException {
+        List<String> frames = new ArrayList<>();
+        try (FrameLogReader reader = new FrameLogReader(directory)) {
+            FrameLogReader.Frame frame;
+            while ((frame = reader.next()) != null) {
+                frames.add(frame.getText());
+            }
+        }
+        System.out.println("Loaded " + frames.size() + " recorded frames from " + directory + ".");
+        return frames;
+    }
+
+    /**
+     * Parses a topic mix such as "music:3,sport:1" into weights per topic.
+     */
+    private static Map<String, Double> parseMix(String mix) {
+        Map<String, Double> weights = new HashMap<>();
+        for (String entry : mix.split(",")) {
+            if (!entry.isBlank()) {
+                String[] parts = entry.trim().split(":");
+                weights.put(parts[0], Double.parseDouble(parts[1]));
+            }
+        }
+        return weights;
+    }
+
+    private static void printUsage() {
+        System.out.println("Options: port=8080 corpus=corpus rate=fixed:100 mix=music:3,sport:1");
+        System.out.println("Rates: max | fixed:<perSecond> | ramp:<from>:<to>:<seconds> | burst:<base>:<burst>:<burstSeconds>:<periodSeconds>");
+    }
+}
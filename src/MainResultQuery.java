@@ -0,0 +1,77 @@
+import Utils.ResultStore;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class MainResultQuery {
+    public static void main(String[] args) {
+        // Default values
+        String directory = "results";
+        String asin = null;
+        String from = null;
+        String to = null;
+        long reviewId = -1;
+        int limit = 100;
+
+        // Process command-line arguments
+        for (String arg : args) {
+            try {
+                if (arg.startsWith("dir=")) {
+                    directory = arg.substring("dir=".length()).trim();
+                } else if (arg.startsWith("asin=")) {
+                    asin = arg.substring("asin=".length()).trim();
+                } else if (arg.startsWith("from=")) {
+                    from = arg.substring("from=".length()).trim();
+                } else if (arg.startsWith("to=")) {
+                    to = arg.substring("to=".length()).trim();
+                } else if (arg.startsWith("id=")) {
+                    reviewId = Long.parseLong(arg.substring("id=".length()).trim());
+                } else if (arg.startsWith("limit=")) {
+                    limit = Integer.parseInt(arg.substring("limit=".length()).trim());
+                } else {
+                    System.out.println("Unknown argument: " + arg);
+                    printUsage();
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid number in " + arg + ".");
+                return;
+            }
+        }
+
+        try {
+            // Read-only, so the results can be queried while a mode is still writing them
+            ResultStore store = ResultStore.openReadOnly(directory);
+            List<ResultStore.StoredResult> results = new ArrayList<>();
+            if (reviewId >= 0) {
+                ResultStore.StoredResult result = store.read(reviewId);
+                if (result != null) {
+                    results.add(result);
+                }
+            } else if (asin != null) {
+                results = store.lookup(asin);
+            } else if (from != null && to != null) {
+                results = store.range(from, to, limit);
+            } else {
+                System.out.println(directory + " holds " + store.size() + " results.");
+                printUsage();
+                return;
+            }
+            for (ResultStore.StoredResult result : results.subList(0, Math.min(limit, results.size()))) {
+                System.out.println(result.getReviewId() + "\t" + result.getAsin() + "\t" + result.getSentiment()
+                        + "\tsentences=" + result.getSentenceCount() + " classes=" + Arrays.toString(result.getClassCounts())
+                        + "\toverall=" + result.getOverall() + "\treviewTime=" + result.getUnixReviewTime());
+            }
+            System.out.println(results.size() + " of " + store.size() + " results.");
+            store.close();
+        } catch (IOException e) {
+            System.out.println("Error opening result store " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println("Options: dir=results (id=<reviewId> | asin=<asin> | from=<asin> to=<asin>) limit=100");
+    }
+}
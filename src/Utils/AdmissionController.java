@@ -0,0 +1,114 @@
+package Utils;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static Utils.Config.ADMISSION_BUDGET_MILLIS;
+import static Utils.Config.ADMISSION_POLICY;
+import static Utils.Config.ADMISSION_SAMPLE_EVERY;
+
+/**
+ * Keeps the queueing delay of the reviews within a latency budget when the stream bursts.
+ *
+ * A review is admitted when an analysis thread picks it up. If it waited longer than
+ * {@code ADMISSION_BUDGET_MILLIS} in the queue, the configured policy is applied:
+ * - DROP_OLDEST: the review is shed. It is the oldest one in the queue, so the queue is drained from the
+ *   head until a review within the budget is found.
+ * - SAMPLE: only one in {@code ADMISSION_SAMPLE_EVERY} reviews over the budget is analyzed, the rest is shed.
+ * - DEGRADE: the review is analyzed with {@link SentimentAnalyzer#analyzeDegraded}, which only parses the
+ *   first and last sentences of a long review.
+ * The number of shed and degraded reviews is reported every interval by the {@link ReviewCounter}.
+ * Without a budget, which is the default, every review is analyzed.
+ *
+ * Methods:
+ * - admit: Decides whether a review is analyzed, analyzed the cheap way or shed.
+ * - isOverBudget: Tells whether a review waited longer than the budget.
+ * - getShedAndReset: Returns the number of reviews shed since the last call.
+ * - getDegradedAndReset: Returns the number of reviews degraded since the last call.
+ */
+public class AdmissionController {
+    public enum Policy { DROP_OLDEST, SAMPLE, DEGRADE }
+
+    public enum Decision { ANALYZE, DEGRADE, SHED }
+
+    private final long budgetNanos;
+    private final Policy policy;
+    private final int sampleEvery;
+    private final AtomicLong overBudget = new AtomicLong();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder degraded = new LongAdder();
+
+    /**
+     * Creates a controller with the budget and policy from the configuration.
+     */
+    public AdmissionController() {
+        this(ADMISSION_BUDGET_MILLIS, parsePolicy(ADMISSION_POLICY), ADMISSION_SAMPLE_EVERY);
+    }
+
+    /**
+     * @param budgetMillis The longest a review may wait in the queue, 0 admits every review.
+     * @param policy What to do with a review that waited longer.
+     * @param sampleEvery One in how many reviews over the budget is analyzed by the SAMPLE policy.
+     */
+    public AdmissionController(long budgetMillis, Policy policy, int sampleEvery) {
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, budgetMillis));
+        this.policy = policy;
+        this.sampleEvery = Math.max(1, sampleEvery);
+        if (budgetNanos > 0) {
+            System.out.println(String.format(Locale.ROOT, "Admission control: %s over %d ms of queue wait", policy, budgetMillis));
+        }
+    }
+
+    /**
+     * Decides what to do with a review that is about to be analyzed.
+     *
+     * @param queuedNanos How long the review waited in the queue.
+     * @return ANALYZE within the budget, otherwise the decision of the policy.
+     */
+    public Decision admit(long queuedNanos) {
+        if (budgetNanos == 0 || queuedNanos <= budgetNanos) {
+            return Decision.ANALYZE;
+        }
+        switch (policy) {
+            case SAMPLE:
+                if (overBudget.getAndIncrement() % sampleEvery == 0) {
+                    return Decision.ANALYZE;
+                }
+                shed.increment();
+                return Decision.SHED;
+            case DEGRADE:
+                degraded.increment();
+                return Decision.DEGRADE;
+            default:
+                shed.increment();
+                return Decision.SHED;
+        }
+    }
+
+    /**
+     * @param queuedNanos How long the review waited in the queue.
+     * @return True if the review waited longer than the budget, so {@link #admit} applies the policy.
+     */
+    public boolean isOverBudget(long queuedNanos) {
+        return budgetNanos > 0 && queuedNanos > budgetNanos;
+    }
+
+    public long getShedAndReset() {
+        return shed.sumThenReset();
+    }
+
+    public long getDegradedAndReset() {
+        return degraded.sumThenReset();
+    }
+
+    private static Policy parsePolicy(String name) {
+        try {
+            return Policy.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown admission policy " + name + ", using DROP_OLDEST");
+            return Policy.DROP_OLDEST;
+        }
+    }
+}
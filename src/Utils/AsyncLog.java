@@ -0,0 +1,187 @@
+package Utils;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static Utils.Config.LOG_BUFFER_CAPACITY;
+import static Utils.Config.LOG_DEBUG;
+import static Utils.Config.LOG_LEVEL;
+import static Utils.Config.LOG_SAMPLE_EVERY;
+
+/**
+ * Asynchronous console log, so the analysis threads never wait for stdout.
+ *
+ * Records are put in a bounded lock-free ring buffer by any number of threads and printed by a single
+ * background thread, which writes everything it finds in the buffer with one print call. Logging never
+ * blocks: when the buffer is full the record is dropped and counted, and the number of dropped records
+ * is printed as soon as there is room again.
+ *
+ * Per-review output is sampled: {@link #sampled()} is true for about one in {@code LOG_SAMPLE_EVERY}
+ * reviews. With -Dlog.debug=true every review is logged and the level is lowered to DEBUG, which
+ * restores the full per-review output.
+ *
+ * Methods:
+ * - debug, info, warn, error: Queue a record with the given level.
+ * - sampled: Decides whether the current review is logged.
+ * - flush: Waits until the queued records have been printed.
+ */
+public class AsyncLog {
+    public enum Level { DEBUG, INFO, WARN, ERROR }
+
+    private static final Level level = LOG_DEBUG ? Level.DEBUG : parseLevel(LOG_LEVEL);
+    private static final int sampleEvery = LOG_DEBUG ? 1 : Math.max(1, LOG_SAMPLE_EVERY);
+    // Rounded up to a power of two so a sequence number maps to a slot with a mask
+    private static final int capacity = Integer.highestOneBit(Math.max(2, LOG_BUFFER_CAPACITY) * 2 - 1);
+    private static final int mask = capacity - 1;
+    private static final AtomicReferenceArray<Record> slots = new AtomicReferenceArray<>(capacity);
+    // Next sequence number to claim by producers, and next one to print by the log thread
+    private static final AtomicLong tail = new AtomicLong(0);
+    private static volatile long head = 0;
+    private static final LongAdder droppedRecords = new LongAdder();
+    private static final PrintStream out = System.out;
+    private static final PrintStream err = System.err;
+
+    static {
+        Thread logThread = new Thread(AsyncLog::printLoop, "async-log");
+        logThread.setDaemon(true);
+        logThread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(AsyncLog::flush, "async-log-flush"));
+    }
+
+    public static void debug(String message) {
+        log(Level.DEBUG, message);
+    }
+
+    public static void info(String message) {
+        log(Level.INFO, message);
+    }
+
+    public static void warn(String message) {
+        log(Level.WARN, message);
+    }
+
+    public static void error(String message) {
+        log(Level.ERROR, message);
+    }
+
+    /**
+     * @param recordLevel The level of the record.
+     * @return True if records of the level are logged, so callers can skip building the message.
+     */
+    public static boolean isEnabled(Level recordLevel) {
+        return recordLevel.compareTo(level) >= 0;
+    }
+
+    /**
+     * Decides whether the output of the current review is logged, one in {@code LOG_SAMPLE_EVERY} on average.
+     * Uses a thread-local random number, so the sampling decision itself is never contended.
+     *
+     * @return True if the review should be logged.
+     */
+    public static boolean sampled() {
+        return sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0;
+    }
+
+    public static long getDroppedRecords() {
+        return droppedRecords.sum();
+    }
+
+    /**
+     * Waits up to a second until the records queued so far have been printed.
+     */
+    public static void flush() {
+        long target = tail.get();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (head < target && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    private static void log(Level recordLevel, String message) {
+        if (!isEnabled(recordLevel)) {
+            return;
+        }
+        Record record = new Record(recordLevel, message);
+        while (true) {
+            long sequence = tail.get();
+            if (sequence - head >= capacity) {
+                droppedRecords.increment();
+                return;
+            }
+            if (tail.compareAndSet(sequence, sequence + 1)) {
+                slots.lazySet((int) (sequence & mask), record);
+                return;
+            }
+        }
+    }
+
+    private static void printLoop() {
+        StringBuilder standardOutput = new StringBuilder();
+        StringBuilder errorOutput = new StringBuilder();
+        long reportedDrops = 0;
+        while (true) {
+            long sequence = head;
+            if (sequence == tail.get()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                continue;
+            }
+            // Take everything that is in the buffer and print it at once
+            long end = tail.get();
+            while (sequence < end) {
+                int slot = (int) (sequence & mask);
+                Record record = slots.get(slot);
+                if (record == null) {
+                    // Claimed by a producer that has not stored its record yet
+                    Thread.onSpinWait();
+                    continue;
+                }
+                slots.lazySet(slot, null);
+                sequence++;
+                head = sequence;
+                (record.level.compareTo(Level.WARN) >= 0 ? errorOutput : standardOutput)
+                        .append(record.message).append(System.lineSeparator());
+            }
+            long drops = droppedRecords.sum();
+            if (drops > reportedDrops) {
+                errorOutput.append("Log buffer full, ").append(drops - reportedDrops)
+                        .append(" records dropped").append(System.lineSeparator());
+                reportedDrops = drops;
+            }
+            print(out, standardOutput);
+            print(err, errorOutput);
+        }
+    }
+
+    private static void print(PrintStream stream, StringBuilder output) {
+        if (output.length() > 0) {
+            stream.print(output);
+            stream.flush();
+            output.setLength(0);
+        }
+    }
+
+    private static Level parseLevel(String name) {
+        try {
+            return Level.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown log level " + name + ", using INFO.");
+            return Level.INFO;
+        }
+    }
+
+    private static class Record {
+        private final Level level;
+        private final String message;
+
+        private Record(Level level, String message) {
+            this.level = level;
+            this.message = message;
+        }
+    }
+}
@@ -4,10 +4,87 @@ package Utils;
  * Contains constant configuration values used throughout the application.
  */
 public class Config {
-    public static final String WEB_SOCKET_URL = "wss://prog3.student.famnit.upr.si/sentiment";
+    // Can be pointed at a local replay server with -Dwebsocket.url=ws://localhost:8080/sentiment
+    public static final String WEB_SOCKET_URL = System.getProperty("websocket.url", "wss://prog3.student.famnit.upr.si/sentiment");
     public static final String RESET = "\033[0m";
     public static final String GREEN = "\033[32m";
-    public static final String D_RESULT_FILE = "distributed_reviews_per_second3.txt";
-    public static final String P_RESULT_FILE = "parallel_reviews_per_second_test.txt";
-    public static final String S_RESULT_FILE = "sequential_reviews_per_second1.txt";
-}
\ No newline at end of file
+    public static final String D_RESULT_FILE = "distributed_reviews_per_second.jsonl";
+    public static final String P_RESULT_FILE = "parallel_reviews_per_second.jsonl";
+    public static final String S_RESULT_FILE = "sequential_reviews_per_second.jsonl";
+    public static final String B_RESULT_FILE = "batch_reviews_per_second.jsonl";
+
+    // Interval of the metrics records and the size at which a metrics file is rotated (-Dmetrics.intervalMillis=...)
+    public static final long METRICS_INTERVAL_MILLIS = Long.getLong("metrics.intervalMillis", 1000);
+    public static final long METRICS_MAX_FILE_BYTES = Long.getLong("metrics.maxFileBytes", 64L * 1024 * 1024);
+
+    // Frames in flight over all connections of the parallel mode, which also sizes its work queue (-Dparallel.credit=...)
+    public static final int PARALLEL_CREDIT = Integer.getInteger("parallel.credit", 64);
+    // Interval at which the parallel pool size is tuned, 0 keeps it fixed, and its upper bound, 0 for the CPU limit
+    public static final long POOL_TUNE_INTERVAL_MILLIS = Long.getLong("parallel.tuneIntervalMillis", 5000);
+    public static final int POOL_MAX_SIZE = Integer.getInteger("parallel.maxPoolSize", 0);
+
+    // Maximum number of sentences kept in the sentiment cache, 0 disables it (-Dsentiment.cacheCapacity=...)
+    public static final int SENTENCE_CACHE_CAPACITY = Integer.getInteger("sentiment.cacheCapacity", 50_000);
+
+    // Number of batches the distributed master keeps in flight per worker (-Ddistributed.inFlight=...)
+    public static final int DISTRIBUTED_IN_FLIGHT = Integer.getInteger("distributed.inFlight", 2);
+    // Reviews the distributed master holds before it is sent to a worker, a connection only gets its next frame
+    // once the master has room for it (-Ddistributed.queueCapacity=...)
+    public static final int DISTRIBUTED_QUEUE_CAPACITY = Integer.getInteger("distributed.queueCapacity", 1024);
+    // Maximum number of reviews per MPI message and how long a partial batch may wait for more reviews
+    public static final int DISTRIBUTED_BATCH_SIZE = Integer.getInteger("distributed.batchSize", 8);
+    public static final long DISTRIBUTED_BATCH_LINGER_MILLIS = Long.getLong("distributed.batchLingerMillis", 5);
+    // Analysis threads per worker rank, more than 1 runs hybrid MPI and multithreaded ranks (-Ddistributed.workerThreads=...)
+    public static final int DISTRIBUTED_WORKER_THREADS = Integer.getInteger("distributed.workerThreads", 1);
+    // A batch past the deadline of its worker is sent again to a worker with a free slot, the deadline adapts to the
+    // latency of every worker but is never shorter than the minimum and starts at the initial deadline
+    public static final boolean DISTRIBUTED_SPECULATE = Boolean.parseBoolean(System.getProperty("distributed.speculate", "true"));
+    public static final long DISTRIBUTED_MIN_DEADLINE_MILLIS = Long.getLong("distributed.minDeadlineMillis", 50);
+    public static final long DISTRIBUTED_INITIAL_DEADLINE_MILLIS = Long.getLong("distributed.initialDeadlineMillis", 5000);
+
+    // Directory the raw frames are recorded to, recording is off unless -Drecord.dir=... is set, and the frames that may wait for its writer
+    public static final String RECORD_DIR = System.getProperty("record.dir");
+    public static final long RECORD_SEGMENT_BYTES = Long.getLong("record.segmentBytes", 64L * 1024 * 1024);
+    public static final int RECORD_QUEUE_CAPACITY = Integer.getInteger("record.queueCapacity", 65_536);
+    // Directory of the binary results store, off unless -Dresults.dir=... is set, and the results that may wait for its writer
+    public static final String RESULTS_DIR = System.getProperty("results.dir");
+    public static final long RESULTS_SEGMENT_BYTES = Long.getLong("results.segmentBytes", 64L * 1024 * 1024);
+    public static final int RESULTS_QUEUE_CAPACITY = Integer.getInteger("results.queueCapacity", 65_536);
+
+    // Byte ranges of a batch input file smaller than this are not split further (-Dbatch.splitBytes=...)
+    public static final long BATCH_SPLIT_BYTES = Long.getLong("batch.splitBytes", 256 * 1024);
+
+    // WebSocket connections opened per topic, 0 subscribes all topics over a single connection (-Dingest.connectionsPerTopic=...)
+    public static final int INGEST_CONNECTIONS_PER_TOPIC = Integer.getInteger("ingest.connectionsPerTopic", 1);
+
+    // Sliding window of the per-topic and per-product sentiment aggregates and the port they are served on,
+    // off by default since every mode and MPI rank on a host would bind the same port (-Daggregate.httpPort=8081)
+    public static final long AGGREGATE_WINDOW_SECONDS = Long.getLong("aggregate.windowSeconds", 300);
+    public static final int AGGREGATE_BUCKETS = Integer.getInteger("aggregate.buckets", 10);
+    public static final int AGGREGATE_HTTP_PORT = Integer.getInteger("aggregate.httpPort", 0);
+
+    // Console log: level, one in how many reviews is printed and the size of its buffer; -Dlog.debug=true prints every review
+    public static final String LOG_LEVEL = System.getProperty("log.level", "INFO");
+    public static final int LOG_SAMPLE_EVERY = Integer.getInteger("log.sampleEvery", 1000);
+    public static final int LOG_BUFFER_CAPACITY = Integer.getInteger("log.bufferCapacity", 8192);
+    public static final boolean LOG_DEBUG = Boolean.getBoolean("log.debug");
+
+    // Directory of the decompressed CoreNLP models, an empty value loads them from the models jar (-Dmodel.cacheDir=...)
+    public static final String MODEL_CACHE_DIR = System.getProperty("model.cacheDir", System.getProperty("java.io.tmpdir") + "/sentiment-models");
+    // Reviews every analysis thread analyzes from the warm-up corpus before subscribing, 0 disables warm-up
+    public static final String WARMUP_CORPUS = System.getProperty("warmup.corpus", "corpus");
+    public static final int WARMUP_REVIEWS = Integer.getInteger("warmup.reviews", 50);
+
+    // Reviews with at least this many uncached sentences are scored in parallel, 0 disables it (-Dsentiment.parallelThreshold=...),
+    // on a pool of at most this many threads that only uses the CPUs the analysis threads leave idle
+    public static final int SENTENCE_PARALLEL_THRESHOLD = Integer.getInteger("sentiment.parallelThreshold", 8);
+    public static final int SENTENCE_PARALLELISM = Integer.getInteger("sentiment.parallelism", Runtime.getRuntime().availableProcessors());
+
+    // Longest a review may wait for analysis before the admission policy DROP_OLDEST, SAMPLE or DEGRADE applies,
+    // off by default so every review is analyzed and runs stay comparable, load tests opt in (-Dadmission.budgetMillis=2000)
+    public static final long ADMISSION_BUDGET_MILLIS = Long.getLong("admission.budgetMillis", 0);
+    public static final String ADMISSION_POLICY = System.getProperty("admission.policy", "DROP_OLDEST");
+    public static final int ADMISSION_SAMPLE_EVERY = Integer.getInteger("admission.sampleEvery", 4);
+    // Sentences a degraded review is scored on, half from its start and half from its end
+    public static final int ADMISSION_DEGRADE_SENTENCES = Integer.getInteger("admission.degradeSentences", 4);
+}
@@ -0,0 +1,82 @@
+package Utils;
+
+import java.nio.CharBuffer;
+
+/**
+ * Joins the fragments of a WebSocket text message into the complete message.
+ *
+ * The WebSocket client delivers a large message in several onText calls, and only the last one has
+ * {@code last} set. An assembler belongs to one connection and collects the fragments in a char buffer
+ * that is reused for every message of that connection, so assembling does not allocate once the buffer
+ * has grown to the size of the messages. A message that arrives in a single frame is returned as it is,
+ * without being copied. The returned message wraps the reused buffer or the frame of the client, so it
+ * is only valid until the next call and must be parsed before onText returns.
+ *
+ * Methods:
+ * - append: Adds a fragment and returns the complete message once its last fragment has arrived.
+ */
+public class FrameAssembler {
+    private static final int INITIAL_CAPACITY = 8 * 1024;
+    // A buffer that grew beyond this for one large message is not kept for the next ones
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+    // Messages larger than this are dropped instead of growing the buffer without bound
+    private static final int MAX_MESSAGE_CHARS = 16 * 1024 * 1024;
+
+    private char[] buffer = new char[INITIAL_CAPACITY];
+    private int length;
+    private boolean dropping;
+
+    /**
+     * Adds a fragment of a text message.
+     *
+     * @param data The fragment received in onText.
+     * @param last Whether this is the last fragment of the message.
+     * @return The complete message if this was its last fragment, otherwise null.
+     */
+    public CharSequence append(CharSequence data, boolean last) {
+        if (last && length == 0 && !dropping) {
+            return data;
+        }
+        if (!dropping && length + data.length() > MAX_MESSAGE_CHARS) {
+            AsyncLog.warn("Message longer than " + MAX_MESSAGE_CHARS + " characters is dropped.");
+            dropping = true;
+        }
+        if (dropping) {
+            length = 0;
+            if (last) {
+                dropping = false;
+            }
+            return null;
+        }
+        copy(data);
+        if (!last) {
+            return null;
+        }
+        CharBuffer message = CharBuffer.wrap(buffer, 0, length);
+        length = 0;
+        if (buffer.length > MAX_RETAINED_CAPACITY) {
+            // The message keeps the large buffer, the next message starts with a small one
+            buffer = new char[INITIAL_CAPACITY];
+        }
+        return message;
+    }
+
+    private void copy(CharSequence data) {
+        int count = data.length();
+        if (length + count > buffer.length) {
+            char[] grown = new char[Math.max(length + count, buffer.length * 2)];
+            System.arraycopy(buffer, 0, grown, 0, length);
+            buffer = grown;
+        }
+        if (data instanceof CharBuffer) {
+            ((CharBuffer) data).duplicate().get(buffer, length, count);
+        } else if (data instanceof String) {
+            ((String) data).getChars(0, count, buffer, length);
+        } else {
+            for (int i = 0; i < count; i++) {
+                buffer[length + i] = data.charAt(i);
+            }
+        }
+        length += count;
+    }
+}
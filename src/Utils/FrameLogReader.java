@@ -0,0 +1,203 @@
+package Utils;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static Utils.FrameRecorder.HEADER_BYTES;
+import static Utils.FrameRecorder.INDEX_FILE;
+import static Utils.FrameRecorder.SEGMENT_PREFIX;
+import static Utils.FrameRecorder.SEGMENT_SUFFIX;
+
+/**
+ * Sequential reader of a frame log written by {@link FrameRecorder}.
+ *
+ * The segments are memory-mapped read-only one after the other and scanned front to back, so a log
+ * is read at disk speed. The index file is used to skip the segments that end before the requested
+ * start time; a segment without an index entry, for example the last one of a process that was
+ * killed, is still read up to its end marker.
+ *
+ * Methods:
+ * - next: Returns the next frame of the log, or null at the end.
+ * - listSegments: Lists the segment files of a log in order.
+ */
+public class FrameLogReader implements Closeable {
+    private final List<Path> segments;
+    private final long fromEpochNanos;
+    private int nextSegment;
+    private MappedByteBuffer current;
+
+    /**
+     * Reads the whole log.
+     *
+     * @param directory The directory of the log.
+     */
+    public FrameLogReader(String directory) throws IOException {
+        this(directory, Long.MIN_VALUE);
+    }
+
+    /**
+     * @param directory The directory of the log.
+     * @param fromEpochNanos Frames that arrived before this time, in nanoseconds since the epoch, are skipped.
+     */
+    public FrameLogReader(String directory, long fromEpochNanos) throws IOException {
+        Path path = Paths.get(directory);
+        this.fromEpochNanos = fromEpochNanos;
+        Map<Integer, Long> lastTimestamps = readIndex(path);
+        this.segments = new ArrayList<>();
+        for (Path segment : listSegments(path)) {
+            Long lastTimestamp = lastTimestamps.get(segmentNumber(segment));
+            if (lastTimestamp == null || lastTimestamp >= fromEpochNanos) {
+                segments.add(segment);
+            }
+        }
+    }
+
+    /**
+     * @return The next frame of the log, or null if all segments have been read.
+     */
+    public Frame next() throws IOException {
+        while (true) {
+            if (current == null || current.remaining() < HEADER_BYTES) {
+                if (nextSegment >= segments.size()) {
+                    return null;
+                }
+                current = map(segments.get(nextSegment++));
+                continue;
+            }
+            int recordLength = current.getInt();
+            if (recordLength <= 0) {
+                // End marker, continue with the next segment
+                current = null;
+                continue;
+            }
+            long timestamp = current.getLong();
+            int topicLength = current.getShort() & 0xFFFF;
+            int frameLength = recordLength - HEADER_BYTES - topicLength;
+            if (frameLength < 0 || topicLength + frameLength > current.remaining()) {
+                throw new IOException("Corrupt record in " + segments.get(nextSegment - 1) + " at offset " + (current.position() - HEADER_BYTES));
+            }
+            if (timestamp < fromEpochNanos) {
+                current.position(current.position() + topicLength + frameLength);
+                continue;
+            }
+            String topic = decode(topicLength);
+            String text = decode(frameLength);
+            return new Frame(timestamp, topic, text);
+        }
+    }
+
+    @Override
+    public void close() {
+        // Mappings are released by the garbage collector
+        current = null;
+        nextSegment = segments.size();
+    }
+
+    /**
+     * Lists the segment files of a log in the order they were written.
+     *
+     * @param directory The directory of the log.
+     * @return The segment files, empty if the directory has none.
+     */
+    public static List<Path> listSegments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    static Path segmentPath(Path directory, int segmentNumber) {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, segmentNumber, SEGMENT_SUFFIX));
+    }
+
+    static int segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * @return The last timestamp of every segment that has an index entry.
+     */
+    private static Map<Integer, Long> readIndex(Path directory) throws IOException {
+        Map<Integer, Long> lastTimestamps = new HashMap<>();
+        Path indexFile = directory.resolve(INDEX_FILE);
+        if (!Files.exists(indexFile)) {
+            return lastTimestamps;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            while (true) {
+                int segmentNumber = in.readInt();
+                in.readLong(); // first timestamp
+                long lastTimestamp = in.readLong();
+                in.readInt(); // record count
+                in.readLong(); // bytes used
+                lastTimestamps.put(segmentNumber, lastTimestamp);
+            }
+        } catch (EOFException e) {
+            // End of the index
+        }
+        return lastTimestamps;
+    }
+
+    private static MappedByteBuffer map(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private String decode(int length) {
+        byte[] bytes = new byte[length];
+        current.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A recorded frame with its arrival time and topic.
+     */
+    public static class Frame {
+        private final long epochNanos;
+        private final String topic;
+        private final String text;
+
+        private Frame(long epochNanos, String topic, String text) {
+            this.epochNanos = epochNanos;
+            this.topic = topic;
+            this.text = text;
+        }
+
+        public long getEpochNanos() {
+            return epochNanos;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
+}
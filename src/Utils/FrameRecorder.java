@@ -0,0 +1,262 @@
+package Utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static Utils.Config.RECORD_DIR;
+import static Utils.Config.RECORD_QUEUE_CAPACITY;
+import static Utils.Config.RECORD_SEGMENT_BYTES;
+
+/**
+ * Records the raw WebSocket frames to an append-only log, so live traffic can be replayed later.
+ *
+ * The log is a directory of fixed-size segment files that are memory-mapped once, so appending a frame
+ * is a copy into memory and never a system call; the operating system writes the pages back to disk.
+ * Every record holds the arrival time, the topic and the frame:
+ * [int recordLength][long epochNanos][short topicLength][topic utf8][frame utf8]
+ * A record length of 0 marks the end of the records in a segment. When a segment is closed, an entry
+ * with its number, first and last timestamps, record count and size is appended to the index file.
+ * The log is read back with {@link FrameLogReader}.
+ *
+ * The WebSocket threads only copy the frame and queue it; a single writer thread encodes the frames,
+ * copies them into the segment and does the rollover, which forces the full segment to disk and maps
+ * the next one. If the writer falls behind, frames are dropped and counted instead of slowing ingest.
+ *
+ * Recording is enabled with -Drecord.dir=&lt;directory&gt;, otherwise {@link #record} does nothing.
+ *
+ * Methods:
+ * - fromConfig: Creates the recorder configured with the record.* system properties.
+ * - record: Queues a frame with its arrival time and topic.
+ * - close: Writes the queued frames, closes the current segment and writes its index entry.
+ */
+public class FrameRecorder {
+    public static final String INDEX_FILE = "frames.idx";
+    static final String SEGMENT_PREFIX = "frames-";
+    static final String SEGMENT_SUFFIX = ".log";
+    // recordLength, epochNanos and topicLength
+    static final int HEADER_BYTES = Integer.BYTES + Long.BYTES + Short.BYTES;
+    private static final int WRITE_BATCH = 1024;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long epochNanosAtStart = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    private final long nanoTimeAtStart = System.nanoTime();
+    private final BlockingQueue<PendingFrame> queue;
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private Thread writer;
+    private volatile boolean closed;
+    // Only used by the writer thread
+    private DataOutputStream index;
+    private MappedByteBuffer segment;
+    private int segmentNumber = -1;
+    private int segmentRecords;
+    private long firstTimestamp;
+    private long lastTimestamp;
+
+    /**
+     * @param directory The directory of the log, created if needed. New segments follow the existing ones.
+     * @param segmentBytes The size of a segment file, the largest frame that can be recorded is a bit smaller.
+     */
+    public FrameRecorder(String directory, long segmentBytes) throws IOException {
+        this(directory, segmentBytes, RECORD_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param directory The directory of the log, created if needed. New segments follow the existing ones.
+     * @param segmentBytes The size of a segment file, the largest frame that can be recorded is a bit smaller.
+     * @param queueCapacity The number of frames that may wait for the writer before new ones are dropped.
+     */
+    public FrameRecorder(String directory, long segmentBytes, int queueCapacity) throws IOException {
+        this.directory = directory == null ? null : Paths.get(directory);
+        this.segmentBytes = (int) Math.min(Integer.MAX_VALUE, Math.max(4096, segmentBytes));
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        if (this.directory != null) {
+            Files.createDirectories(this.directory);
+            List<Path> existing = FrameLogReader.listSegments(this.directory);
+            if (!existing.isEmpty()) {
+                this.segmentNumber = FrameLogReader.segmentNumber(existing.get(existing.size() - 1));
+            }
+            this.index = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(this.directory.resolve(INDEX_FILE).toFile(), true)));
+            this.writer = new Thread(this::writeFrames, "frame-recorder-writer");
+            this.writer.setDaemon(true);
+            this.writer.start();
+            System.out.println("Recording frames to " + this.directory.toAbsolutePath());
+        }
+    }
+
+    /**
+     * Creates the recorder configured with -Drecord.dir and -Drecord.segmentBytes.
+     * If recording is disabled or the directory cannot be used, the returned recorder ignores all frames.
+     */
+    public static FrameRecorder fromConfig() {
+        try {
+            return new FrameRecorder(RECORD_DIR, RECORD_SEGMENT_BYTES);
+        } catch (IOException e) {
+            System.err.println("Error opening record directory " + RECORD_DIR + ": " + e.getMessage());
+            try {
+                return new FrameRecorder(null, RECORD_SEGMENT_BYTES);
+            } catch (IOException impossible) {
+                throw new IllegalStateException(impossible);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Queues a frame for the writer thread. Called from the WebSocket listener, so it only copies the
+     * frame, which may be a buffer that is reused for the next message, and never blocks: if the queue
+     * is full, the frame is dropped and counted.
+     *
+     * @param frame The raw text of the frame.
+     * @param topic The topic of the frame, the name of its first field, or null if it has none.
+     * @param arrivedNanos When the frame arrived, from {@link System#nanoTime()}.
+     */
+    public void record(CharSequence frame, String topic, long arrivedNanos) {
+        if (directory == null || closed) {
+            return;
+        }
+        long timestamp = epochNanosAtStart + (arrivedNanos - nanoTimeAtStart);
+        if (!queue.offer(new PendingFrame(timestamp, topic, frame.toString()))) {
+            if (droppedFrames.getAndIncrement() % 10_000 == 0) {
+                AsyncLog.warn("Frame recorder is behind, " + droppedFrames.get() + " frames dropped so far");
+            }
+        }
+    }
+
+    /**
+     * Writes the queued frames, closes the current segment and writes its index entry.
+     */
+    public void close() {
+        if (directory == null || closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (droppedFrames.get() > 0) {
+            System.out.println("Frame recorder closed, " + droppedFrames.get() + " frames dropped.");
+        }
+    }
+
+    /**
+     * Writes the queued frames in batches until the recorder is closed, then closes the log.
+     */
+    private void writeFrames() {
+        List<PendingFrame> batch = new ArrayList<>(WRITE_BATCH);
+        try {
+            while (true) {
+                try {
+                    PendingFrame first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first != null) {
+                        batch.add(first);
+                    }
+                } catch (InterruptedException e) {
+                    break;
+                }
+                queue.drainTo(batch, WRITE_BATCH - batch.size());
+                if (batch.isEmpty()) {
+                    if (closed) {
+                        break;
+                    }
+                    continue;
+                }
+                for (PendingFrame frame : batch) {
+                    write(frame);
+                }
+                batch.clear();
+            }
+            finishSegment();
+            index.close();
+        } catch (IOException e) {
+            System.err.println("Error recording frames, recording stopped: " + e.getMessage());
+            closed = true;
+        }
+    }
+
+    private void write(PendingFrame frame) throws IOException {
+        byte[] topicBytes = (frame.topic == null ? "" : frame.topic).getBytes(StandardCharsets.UTF_8);
+        byte[] frameBytes = frame.text.getBytes(StandardCharsets.UTF_8);
+        int recordLength = HEADER_BYTES + topicBytes.length + frameBytes.length;
+        if (recordLength + Integer.BYTES > segmentBytes) {
+            System.err.println("Frame of " + recordLength + " bytes does not fit in a segment and is not recorded.");
+            return;
+        }
+        // A full segment always keeps room for the end marker
+        if (segment == null || segment.remaining() < recordLength + Integer.BYTES) {
+            nextSegment();
+        }
+        segment.putInt(recordLength);
+        segment.putLong(frame.timestamp);
+        segment.putShort((short) topicBytes.length);
+        segment.put(topicBytes);
+        segment.put(frameBytes);
+        if (segmentRecords++ == 0) {
+            firstTimestamp = frame.timestamp;
+        }
+        lastTimestamp = frame.timestamp;
+    }
+
+    private void nextSegment() throws IOException {
+        finishSegment();
+        segmentNumber++;
+        Path path = FrameLogReader.segmentPath(directory, segmentNumber);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        segmentRecords = 0;
+    }
+
+    private void finishSegment() throws IOException {
+        if (segment == null) {
+            return;
+        }
+        // The file is zero-filled, so the end marker is already there
+        segment.force();
+        index.writeInt(segmentNumber);
+        index.writeLong(firstTimestamp);
+        index.writeLong(lastTimestamp);
+        index.writeInt(segmentRecords);
+        index.writeLong(segment.position());
+        index.flush();
+        segment = null;
+    }
+
+    /**
+     * A frame waiting for the writer thread.
+     */
+    private static class PendingFrame {
+        private final long timestamp;
+        private final String topic;
+        private final String text;
+
+        private PendingFrame(long timestamp, String topic, String text) {
+            this.timestamp = timestamp;
+            this.topic = topic;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package Utils;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens and maintains the WebSocket connections that feed an implementation mode.
+ *
+ * Instead of subscribing every topic over one socket, the manager opens one connection per topic, or
+ * several per topic, so a single socket and its callback thread no longer limit ingest. Every
+ * connection subscribes its own topics and then hands its frames to the same listener, which merges
+ * them into the analysis queue of the mode; the listener therefore must not keep per-connection state.
+ * Fragmented messages are joined by a {@link FrameAssembler} of the connection, so the listener only
+ * receives complete messages, with {@code last} set. Fragments do not use up the credit of the listener:
+ * the next fragment is requested by the connection itself.
+ * Each connection is kept alive by its own task, which reconnects with a backoff when the socket
+ * closes, so no thread has to block forever to keep the process running.
+ *
+ * The tasks and the WebSocket callbacks run on virtual threads when the JVM supports them (Java 21+),
+ * otherwise on a cached pool of daemon platform threads. All managers open their connections through
+ * one shared HttpClient.
+ *
+ * Methods:
+ * - start: Opens all connections.
+ * - stop: Closes all connections and stops reconnecting.
+ */
+public class IngestManager {
+    private static final long INITIAL_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final HttpClient httpClient = HttpClient.newBuilder()
+            .executor(newVirtualThreadExecutor("websocket"))
+            .build();
+
+    private final URI uri;
+    private final List<List<String>> connectionTopics = new ArrayList<>();
+    private final WebSocket.Listener listener;
+    private final ExecutorService executor = newVirtualThreadExecutor("ingest");
+    private final Set<WebSocket> openWebSockets = ConcurrentHashMap.newKeySet();
+    private volatile boolean running;
+
+    /**
+     * @param url The URL of the WebSocket server.
+     * @param topics The topics to subscribe.
+     * @param connectionsPerTopic Connections opened for every topic, 0 subscribes all topics over a single connection.
+     * @param listener The listener that receives the frames of all connections.
+     */
+    public IngestManager(String url, String[] topics, int connectionsPerTopic, WebSocket.Listener listener) {
+        this.uri = URI.create(url);
+        this.listener = listener;
+        List<String> subscribed = new ArrayList<>();
+        for (String topic : topics) {
+            if (!topic.isBlank()) {
+                subscribed.add(topic.trim());
+            }
+        }
+        if (connectionsPerTopic <= 0) {
+            connectionTopics.add(subscribed);
+        } else {
+            for (String topic : subscribed) {
+                for (int i = 0; i < connectionsPerTopic; i++) {
+                    connectionTopics.add(List.of(topic));
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens all connections and returns without waiting for them.
+     */
+    public void start() {
+        running = true;
+        System.out.println("Opening " + connectionTopics.size() + " WebSocket connection(s) to " + uri);
+        for (int i = 0; i < connectionTopics.size(); i++) {
+            String name = "connection-" + (i + 1) + " " + connectionTopics.get(i);
+            List<String> topics = connectionTopics.get(i);
+            executor.execute(() -> maintainConnection(name, topics));
+        }
+    }
+
+    /**
+     * Closes all connections and stops reconnecting.
+     */
+    public void stop() {
+        running = false;
+        List<CompletableFuture<?>> closing = new ArrayList<>();
+        for (WebSocket webSocket : openWebSockets) {
+            closing.add(webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "Shutdown"));
+        }
+        try {
+            CompletableFuture.allOf(closing.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+            System.out.println("Closed " + closing.size() + " WebSocket connection(s).");
+        } catch (Exception e) {
+            System.err.println("Error closing WebSocket connections: " + e.getMessage());
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return The number of connections the manager maintains.
+     */
+    public int getConnectionCount() {
+        return connectionTopics.size();
+    }
+
+    /**
+     * Keeps one connection open until the manager is stopped, reconnecting with an exponential backoff.
+     */
+    private void maintainConnection(String name, List<String> topics) {
+        long backoffMillis = INITIAL_BACKOFF_MILLIS;
+        while (running) {
+            CompletableFuture<Void> closed = new CompletableFuture<>();
+            try {
+                WebSocket webSocket = httpClient.newWebSocketBuilder()
+                        .buildAsync(uri, new ConnectionListener(topics, closed))
+                        .join();
+                openWebSockets.add(webSocket);
+                backoffMillis = INITIAL_BACKOFF_MILLIS;
+                // Blocking here is cheap on a virtual thread
+                closed.join();
+                openWebSockets.remove(webSocket);
+            } catch (Exception e) {
+                System.err.println("WebSocket " + name + " failed: " + e.getMessage());
+            }
+            if (!running) {
+                return;
+            }
+            System.out.println("Reconnecting WebSocket " + name + " in " + backoffMillis + " ms");
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoffMillis = Math.min(MAX_BACKOFF_MILLIS, backoffMillis * 2);
+        }
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread per task, falling back to daemon platform
+     * threads on JVMs without virtual threads.
+     *
+     * @param namePrefix Prefix for the names of the fallback platform threads.
+     * @return The executor.
+     */
+    public static ExecutorService newVirtualThreadExecutor(String namePrefix) {
+        try {
+            // Called reflectively so the code still compiles and runs on JVMs before Java 21
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threadCount = new AtomicInteger(0);
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, namePrefix + "-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Subscribes the topics of one connection, assembles its fragmented messages, forwards all
+     * events to the shared listener and signals when the connection is closed.
+     */
+    private class ConnectionListener implements WebSocket.Listener {
+        private final List<String> topics;
+        private final CompletableFuture<Void> closed;
+        private final FrameAssembler frameAssembler = new FrameAssembler();
+
+        private ConnectionListener(List<String> topics, CompletableFuture<Void> closed) {
+            this.topics = topics;
+            this.closed = closed;
+        }
+
+        @Override
+        public void onOpen(WebSocket webSocket) {
+            // Only one send may be outstanding on a WebSocket, so the subscriptions are chained
+            CompletableFuture<WebSocket> subscribed = CompletableFuture.completedFuture(webSocket);
+            for (String topic : topics) {
+                subscribed = subscribed.thenCompose(ws -> ws.sendText("topic:" + topic, true));
+            }
+            subscribed.whenComplete((ws, error) -> {
+                if (error != null) {
+                    System.err.println("Error subscribing to " + topics + ": " + error.getMessage());
+                } else {
+                    StartupProfiler.mark("subscribed to " + topics);
+                }
+            });
+            listener.onOpen(webSocket);
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            CharSequence message = frameAssembler.append(data, last);
+            if (message == null) {
+                webSocket.request(1);
+                return null;
+            }
+            return listener.onText(webSocket, message, true);
+        }
+
+        @Override
+        public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+            return listener.onBinary(webSocket, data, last);
+        }
+
+        @Override
+        public CompletionStage<?> onPing(WebSocket webSocket, ByteBuffer message) {
+            return listener.onPing(webSocket, message);
+        }
+
+        @Override
+        public CompletionStage<?> onPong(WebSocket webSocket, ByteBuffer message) {
+            return listener.onPong(webSocket, message);
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            System.out.println("WebSocket " + topics + " closed: " + statusCode + " " + reason);
+            closed.complete(null);
+            return listener.onClose(webSocket, statusCode, reason);
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            closed.complete(null);
+            listener.onError(webSocket, error);
+        }
+    }
+}
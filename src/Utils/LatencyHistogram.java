@@ -0,0 +1,130 @@
+package Utils;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with HDR-style log-linear buckets.
+ *
+ * Every power of two is split into 32 linear sub-buckets, so recorded values keep about 3% precision
+ * from nanoseconds up to hours in less than 2000 counters. Recording is a single atomic increment and
+ * never blocks. {@link #snapshotAndReset()} takes the counts of the current interval and starts a new one.
+ *
+ * Methods:
+ * - record: Records one latency in nanoseconds.
+ * - snapshotAndReset: Returns the values recorded since the last snapshot.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong(0);
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos The latency in nanoseconds, negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketIndex(value));
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Takes the values recorded since the previous snapshot and resets the histogram.
+     * Values recorded concurrently end up either in this snapshot or in the next one.
+     *
+     * @return The snapshot of the interval.
+     */
+    public Snapshot snapshotAndReset() {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.getAndSet(i, 0);
+            total += snapshot[i];
+        }
+        return new Snapshot(snapshot, total, max.getAndSet(0));
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long highestValueInBucket(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * The counts of one interval, used to compute percentiles.
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long totalCount;
+        private final long max;
+
+        private Snapshot(long[] counts, long totalCount, long max) {
+            this.counts = counts;
+            this.totalCount = totalCount;
+            this.max = max;
+        }
+
+        /**
+         * @param percentile The percentile, from 0 to 100.
+         * @return The latency in nanoseconds at the given percentile, or 0 if nothing was recorded.
+         */
+        public long percentile(double percentile) {
+            if (totalCount == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueInBucket(i), max);
+                }
+            }
+            return max;
+        }
+
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @return The p50, p90, p99, p99.9 and max latencies in milliseconds.
+         */
+        public String summary() {
+            return String.format(Locale.ROOT, "p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f ms (n=%d)",
+                    toMillis(percentile(50)), toMillis(percentile(90)), toMillis(percentile(99)),
+                    toMillis(percentile(99.9)), toMillis(max), totalCount);
+        }
+
+        private static double toMillis(long nanos) {
+            return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+}
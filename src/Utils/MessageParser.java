@@ -1,10 +1,11 @@
 package Utils;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
-import java.util.Iterator;
-import java.util.Map;
+import java.io.IOException;
+import java.nio.CharBuffer;
 
 /**
  * Utility class for parsing JSON messages received from the server.
@@ -14,13 +15,24 @@ import java.util.Map;
  *
  * Main methods:
  * - extractReviewText: Extracts the content of the "reviewText" field from the given JSON string.
+ * - parseReview: Extracts the topic, "asin", "reviewText", "overall" and "unixReviewTime" in one pass.
+ * - extractTopic: Returns the topic of a message, the name of its first field.
  * - extractTopics: Splits a string of topics into an array of individual topics based on commas and whitespace, used for subscription.
  */
 public class MessageParser {
-    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final String REVIEW_TEXT_FIELD = "reviewText";
+    private static final String ASIN_FIELD = "asin";
+    private static final String OVERALL_FIELD = "overall";
+    private static final String UNIX_REVIEW_TIME_FIELD = "unixReviewTime";
+
     /**
      * Extracts the "reviewText" field from a JSON message.
      *
+     * The message is read in a single streaming pass: the value of the first field is opened as a
+     * nested parser over the already unescaped characters, and parsing stops as soon as "reviewText"
+     * is found. No intermediate JsonNode trees are built.
+     *
      * @param reviewJson The JSON string containing the review data.
      * @return The content of the "reviewText" field, or null if not found or invalid input.
      */
@@ -28,62 +40,163 @@ public class MessageParser {
         if (reviewJson == null || reviewJson.trim().isEmpty()) {
             return null;
         }
-        try {
-            // Check if the input is a valid JSON object or array
-            if (!isValidJson(reviewJson)) {
-                //System.err.println("Input is not valid JSON.");
+        try (JsonParser outerParser = jsonFactory.createParser(reviewJson)) {
+            // The message must be an object whose first field holds the internal review json
+            if (outerParser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            if (outerParser.nextToken() != JsonToken.FIELD_NAME) {
+                AsyncLog.warn("No fields found in the JSON message.");
+                return null;
+            }
+            if (outerParser.nextToken() != JsonToken.VALUE_STRING) {
+                AsyncLog.warn("Error parsing internal json node!");
                 return null;
             }
-            // Create a jsonNode and read the tree
-            JsonNode jsonNode = objectMapper.readTree(reviewJson);
 
-            // Iterate over the fields in the JSON object
-            Iterator<Map.Entry<String, JsonNode>> fields = jsonNode.fields();
-            if (fields.hasNext()) {
-                // Get the first field
-                Map.Entry<String, JsonNode> firstEntry = fields.next();
-                JsonNode internalNode = firstEntry.getValue();
+            // Parse the internal json directly from the parser's text buffer, without creating a String
+            try (JsonParser innerParser = jsonFactory.createParser(outerParser.getTextCharacters(),
+                    outerParser.getTextOffset(), outerParser.getTextLength())) {
+                String reviewText = findField(innerParser, REVIEW_TEXT_FIELD);
+                if (reviewText == null) {
+                    AsyncLog.warn("Review text not found within internal node.");
+                }
+                return reviewText;
+            }
+        } catch (Exception e) {
+            AsyncLog.warn("Error parsing JSON: " + e.getMessage());
+            return null;
+        }
+    }
 
-                // Check if the message is of the expected format
-                if (internalNode != null && !internalNode.isNull()) {
-                    String reviewText = internalNode.asText();
-                    JsonNode innerNode = objectMapper.readTree(reviewText);
-                    JsonNode reviewTextNode = innerNode.get("reviewText");
+    /**
+     * Parses the fields of a review message that are needed after analysis, in the same single streaming
+     * pass as {@link #extractReviewText}. Parsing stops as soon as all fields have been read.
+     * A message held in a char buffer, as delivered by the WebSocket client or assembled by a
+     * {@link FrameAssembler}, is parsed in place without being copied into a String first.
+     *
+     * @param reviewJson The JSON message containing the review data.
+     * @return The review, or null if the message is invalid or has no "reviewText".
+     */
+    public static Review parseReview(CharSequence reviewJson) {
+        if (reviewJson == null || isBlank(reviewJson)) {
+            return null;
+        }
+        try (JsonParser outerParser = createParser(reviewJson)) {
+            if (outerParser.nextToken() != JsonToken.START_OBJECT
+                    || outerParser.nextToken() != JsonToken.FIELD_NAME) {
+                return null;
+            }
+            String topic = outerParser.getCurrentName();
+            if (outerParser.nextToken() != JsonToken.VALUE_STRING) {
+                AsyncLog.warn("Error parsing internal json node!");
+                return null;
+            }
 
-                    // Once we have the review text, we convert it to text
-                    if (reviewTextNode != null) {
-                        return reviewTextNode.asText();
-                    } else {
-                        System.err.println("Review text not found within internal node.");
-                        return null;
+            try (JsonParser parser = jsonFactory.createParser(outerParser.getTextCharacters(),
+                    outerParser.getTextOffset(), outerParser.getTextLength())) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    return null;
+                }
+                String asin = null;
+                String reviewText = null;
+                double overall = Double.NaN;
+                long unixReviewTime = 0;
+                int remainingFields = 4;
+                while (remainingFields > 0 && parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    if (!value.isScalarValue()) {
+                        parser.skipChildren();
+                    } else if (REVIEW_TEXT_FIELD.equals(field)) {
+                        reviewText = parser.getText();
+                        remainingFields--;
+                    } else if (ASIN_FIELD.equals(field)) {
+                        asin = parser.getText();
+                        remainingFields--;
+                    } else if (OVERALL_FIELD.equals(field)) {
+                        overall = parser.getValueAsDouble(Double.NaN);
+                        remainingFields--;
+                    } else if (UNIX_REVIEW_TIME_FIELD.equals(field)) {
+                        unixReviewTime = parser.getValueAsLong(0);
+                        remainingFields--;
                     }
-                } else {
-                    System.err.println("Error parsing internal json node!");
+                }
+                if (reviewText == null) {
+                    AsyncLog.warn("Review text not found within internal node.");
                     return null;
                 }
-            } else {
-                System.err.println("No fields found in the JSON message.");
-                return null;
+                return new Review(topic, asin, reviewText, overall, unixReviewTime);
             }
         } catch (Exception e) {
-            System.err.println("Error parsing JSON: " + e.getMessage());
+            AsyncLog.warn("Error parsing JSON: " + e.getMessage());
             return null;
         }
     }
 
+    private static JsonParser createParser(CharSequence json) throws IOException {
+        if (json instanceof String) {
+            return jsonFactory.createParser((String) json);
+        }
+        if (json instanceof CharBuffer && ((CharBuffer) json).hasArray()) {
+            CharBuffer chars = (CharBuffer) json;
+            return jsonFactory.createParser(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+        }
+        return jsonFactory.createParser(json.toString());
+    }
+
+    private static boolean isBlank(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
-     * Validates if a string is a valid JSON format.
+     * Extracts the topic of a message, which is the name of its first field. Only the start of the
+     * message is read.
      *
-     * @param str The string to check.
-     * @return True if the string is valid JSON, false otherwise.
+     * @param message The JSON message received from the server.
+     * @return The topic, or null if the message does not start with a field.
      */
-    private static boolean isValidJson(String str) {
-        try {
-            objectMapper.readTree(str);
-            return true;
-        } catch (Exception e) {
-            return false;
+    public static String extractTopic(String message) {
+        if (message == null) {
+            return null;
+        }
+        try (JsonParser parser = jsonFactory.createParser(message)) {
+            if (parser.nextToken() == JsonToken.START_OBJECT && parser.nextToken() == JsonToken.FIELD_NAME) {
+                return parser.getCurrentName();
+            }
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Scans the top level of a JSON object and returns the text of the requested field.
+     * Nested objects and arrays of other fields are skipped without being read into memory.
+     *
+     * @param parser A parser positioned before the start of the object.
+     * @param fieldName The name of the field to look for.
+     * @return The text of the field, or null if the field is missing or not a scalar value.
+     * @throws IOException if the content is not valid JSON.
+     */
+    private static String findField(JsonParser parser, String fieldName) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return null;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            boolean match = fieldName.equals(parser.getCurrentName());
+            JsonToken value = parser.nextToken();
+            if (match) {
+                return value.isScalarValue() ? parser.getText() : null;
+            }
+            parser.skipChildren();
         }
+        return null;
     }
 
     /**
@@ -0,0 +1,160 @@
+package Utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous sink for metrics records, written as JSON lines.
+ *
+ * The file is opened once and kept open. Callers only put the record in a bounded queue and never wait
+ * for the disk: a background thread writes the queued records through a buffered writer, flushes once
+ * the queue is drained and rotates the file when it grows over its size limit. Records are dropped,
+ * and counted, if the queue is full. If the file cannot be written, the writer closes it, reports the
+ * error once and drops every later record without queueing it.
+ *
+ * Methods:
+ * - write: Queues a record without blocking.
+ * - close: Writes the remaining records and closes the file.
+ */
+public class MetricsWriter {
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final int ROTATED_FILES = 5;
+    // Compared by identity, so a record can never be mistaken for the stop marker
+    private static final String STOP = new String("stop");
+
+    private final File file;
+    private final long maxFileBytes;
+    private final BlockingQueue<String> records = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong droppedRecords = new AtomicLong(0);
+    private final Thread writerThread;
+    // Set by the writer thread when the file cannot be written any more
+    private volatile boolean failed = false;
+    private BufferedWriter writer;
+    private long fileBytes;
+
+    /**
+     * @param path The path of the metrics file, records are appended if it exists.
+     * @param maxFileBytes The size after which the file is rotated to path.1, path.2, ...
+     */
+    public MetricsWriter(String path, long maxFileBytes) {
+        this.file = new File(path);
+        this.maxFileBytes = maxFileBytes;
+        this.writerThread = new Thread(this::writeLoop, "metrics-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Queues a record to be written, never blocks the caller.
+     *
+     * @param jsonRecord A single JSON object without line breaks.
+     * @return False if the queue was full or the writer failed, and the record was dropped.
+     */
+    public boolean write(String jsonRecord) {
+        if (!failed && records.offer(jsonRecord)) {
+            return true;
+        }
+        droppedRecords.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Writes the records that are still queued and closes the file. Never waits longer than a few
+     * seconds, so a shutdown hook cannot hang on a writer thread that died or is stuck on the disk.
+     */
+    public void close() {
+        if (failed) {
+            return;
+        }
+        try {
+            if (!records.offer(STOP, 1, TimeUnit.SECONDS)) {
+                System.err.println("Metrics queue of " + file + " is full, the queued records may be lost.");
+            }
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            writerThread.interrupt();
+        }
+    }
+
+    public long getDroppedRecords() {
+        return droppedRecords.get();
+    }
+
+    private void writeLoop() {
+        List<String> batch = new ArrayList<>();
+        try {
+            open();
+            while (true) {
+                batch.add(records.take());
+                records.drainTo(batch);
+                for (String record : batch) {
+                    if (record == STOP) {
+                        writer.close();
+                        return;
+                    }
+                    writer.write(record);
+                    writer.newLine();
+                    fileBytes += record.length() + 1;
+                }
+                batch.clear();
+                writer.flush();
+                if (fileBytes >= maxFileBytes) {
+                    rotate();
+                }
+            }
+        } catch (IOException e) {
+            failed = true;
+            closeQuietly();
+            records.clear();
+            System.err.println("Error writing metrics to " + file + ", later records are dropped: " + e.getMessage());
+        } catch (InterruptedException e) {
+            // Interrupted by close, the records written so far are still flushed
+            closeQuietly();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            if (writer != null) {
+                writer.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing metrics file " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void open() throws IOException {
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+        fileBytes = file.length();
+    }
+
+    private void rotate() throws IOException {
+        writer.close();
+        for (int i = ROTATED_FILES - 1; i >= 1; i--) {
+            File older = new File(file.getPath() + "." + i);
+            if (older.exists()) {
+                File target = new File(file.getPath() + "." + (i + 1));
+                target.delete();
+                older.renameTo(target);
+            }
+        }
+        File first = new File(file.getPath() + ".1");
+        first.delete();
+        file.renameTo(first);
+        open();
+    }
+}
@@ -0,0 +1,105 @@
+package Utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.GZIPInputStream;
+
+import static Utils.Config.MODEL_CACHE_DIR;
+
+/**
+ * Local cache of the decompressed CoreNLP models.
+ *
+ * The parser and sentiment models ship gzip-compressed inside the models jar, so every process, and
+ * every MPI rank, would otherwise decompress them from the jar on startup. The first process extracts
+ * each model once into {@code MODEL_CACHE_DIR}; later processes load the plain file directly, and the
+ * ranks on one host read it from the operating system's file cache. Every process still deserializes
+ * its own copy of the models onto its heap, only the decompression and the disk reads are saved.
+ * Models are written to a temporary file and moved into place, so ranks starting at the same time never
+ * read a partial file.
+ *
+ * The name of a cached file holds the checksum and size of the compressed model as recorded in the
+ * models jar, so a new CoreNLP or models release is extracted again instead of loading the old models.
+ *
+ * Methods:
+ * - resolve: Returns the path to load a model from, extracting it into the cache first if needed.
+ */
+public class ModelCache {
+    public static final String PARSER_MODEL = "edu/stanford/nlp/models/lexparser/englishPCFG.ser.gz";
+    public static final String SENTIMENT_MODEL = "edu/stanford/nlp/models/sentiment/sentiment.ser.gz";
+
+    private ModelCache() {
+    }
+
+    /**
+     * Returns the local path of a decompressed model, extracting it from the classpath the first time.
+     *
+     * @param resource The classpath location of the gzip-compressed model.
+     * @return The path of the cached model, or the resource itself if caching is disabled or fails.
+     */
+    public static synchronized String resolve(String resource) {
+        if (MODEL_CACHE_DIR == null || MODEL_CACHE_DIR.isEmpty()) {
+            return resource;
+        }
+        URL url = ModelCache.class.getClassLoader().getResource(resource);
+        if (url == null) {
+            return resource;
+        }
+        String fileName = resource.substring(resource.lastIndexOf('/') + 1).replaceFirst("\\.gz$", "");
+        Path cached;
+        try {
+            cached = Paths.get(MODEL_CACHE_DIR, fileName.replaceFirst("\\.ser$", "") + "-" + version(url) + ".ser");
+        } catch (IOException e) {
+            System.err.println("Error reading the version of model " + resource + ", loading it from the classpath: " + e.getMessage());
+            return resource;
+        }
+        try {
+            if (Files.size(cached) > 0) {
+                return cached.toString();
+            }
+        } catch (IOException e) {
+            // Not cached yet
+        }
+        try (InputStream compressed = url.openStream()) {
+            long startNanos = System.nanoTime();
+            Files.createDirectories(cached.getParent());
+            Path temporary = Files.createTempFile(cached.getParent(), fileName, ".tmp");
+            try (InputStream in = new GZIPInputStream(compressed, 1 << 16)) {
+                Files.copy(in, temporary, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(temporary, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            System.out.printf("Cached model %s in %s (%d ms)%n", resource, cached, (System.nanoTime() - startNanos) / 1_000_000);
+            return cached.toString();
+        } catch (IOException e) {
+            System.err.println("Error caching model " + resource + ", loading it from the classpath: " + e.getMessage());
+            return resource;
+        }
+    }
+
+    /**
+     * Identifies the version of a model: the CRC-32 and size of its jar entry, which the jar records without
+     * reading the model, or the size and modification time of a model that is not in a jar.
+     */
+    private static String version(URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        if (connection instanceof JarURLConnection) {
+            // Not cached, so the jar file is closed again
+            connection.setUseCaches(false);
+            try (JarFile jar = ((JarURLConnection) connection).getJarFile()) {
+                JarEntry entry = jar.getJarEntry(((JarURLConnection) connection).getEntryName());
+                if (entry != null && entry.getCrc() >= 0) {
+                    return String.format("%08x-%d", entry.getCrc(), entry.getSize());
+                }
+            }
+        }
+        return String.format("%d-%d", connection.getContentLengthLong(), connection.getLastModified());
+    }
+}
@@ -0,0 +1,154 @@
+package Utils;
+
+import mpi.MPI;
+import mpi.MPIException;
+import mpi.Request;
+import mpi.Status;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Framing layer for variable-size MPI messages.
+ *
+ * Payloads are sent as UTF-8 {@code byte[]} of their exact length. On the receiving side the message
+ * is probed first, so its real size is known before it is received into a buffer. Receive buffers are
+ * kept per source rank and only grow when a larger message arrives, so messages of any length make it
+ * through intact without allocating a new buffer for every message.
+ *
+ * Methods:
+ * - send / sendBlocking: Sends a payload to a rank, without or with waiting for completion.
+ * - poll: Receives a message if one has already arrived, without blocking.
+ * - receive: Waits for a message and receives it.
+ */
+public class MpiChannel {
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+    private final byte[][] receiveBuffers;
+
+    /**
+     * @param size The number of ranks in the communicator.
+     */
+    public MpiChannel(int size) {
+        this.receiveBuffers = new byte[size][];
+    }
+
+    /**
+     * Starts a non-blocking send. The payload must not be modified until the returned request completes.
+     *
+     * @param payload The bytes to send.
+     * @param length The number of bytes of the payload to send.
+     * @param destination The rank to send to.
+     * @param tag The message tag.
+     * @return The request of the send.
+     * @throws MPIException if the send cannot be started.
+     */
+    public Request send(byte[] payload, int length, int destination, int tag) throws MPIException {
+        return MPI.COMM_WORLD.Isend(payload, 0, length, MPI.BYTE, destination, tag);
+    }
+
+    /**
+     * Sends a payload and waits until the payload can be reused.
+     *
+     * @throws MPIException if the send fails.
+     */
+    public void sendBlocking(byte[] payload, int length, int destination, int tag) throws MPIException {
+        MPI.COMM_WORLD.Send(payload, 0, length, MPI.BYTE, destination, tag);
+    }
+
+    /**
+     * Receives a matching message if one has already arrived.
+     *
+     * @param source The rank to receive from, or {@code MPI.ANY_SOURCE}.
+     * @param tag The tag to match, or {@code MPI.ANY_TAG}.
+     * @return The received message, or null if no matching message is waiting.
+     * @throws MPIException if receiving fails.
+     */
+    public Message poll(int source, int tag) throws MPIException {
+        Status status = MPI.COMM_WORLD.Iprobe(source, tag);
+        return status == null ? null : receive(status);
+    }
+
+    /**
+     * Waits for a matching message and receives it.
+     *
+     * @param source The rank to receive from, or {@code MPI.ANY_SOURCE}.
+     * @param tag The tag to match, or {@code MPI.ANY_TAG}.
+     * @return The received message.
+     * @throws MPIException if receiving fails.
+     */
+    public Message receive(int source, int tag) throws MPIException {
+        return receive(MPI.COMM_WORLD.Probe(source, tag));
+    }
+
+    private Message receive(Status status) throws MPIException {
+        // Receive exactly the probed message, even if the probe matched any source or tag
+        int length = status.Get_count(MPI.BYTE);
+        byte[] buffer = bufferFor(status.source, length);
+        MPI.COMM_WORLD.Recv(buffer, 0, length, MPI.BYTE, status.source, status.tag);
+        return new Message(status.source, status.tag, buffer, length);
+    }
+
+    private byte[] bufferFor(int source, int length) {
+        byte[] buffer = receiveBuffers[source];
+        if (buffer == null || buffer.length < length) {
+            int capacity = buffer == null ? INITIAL_BUFFER_SIZE : buffer.length;
+            while (capacity < length) {
+                capacity *= 2;
+            }
+            buffer = new byte[capacity];
+            receiveBuffers[source] = buffer;
+        }
+        return buffer;
+    }
+
+    /**
+     * Encodes a string as the UTF-8 payload of a message.
+     */
+    public static byte[] encode(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A received message. Its content is backed by the channel's buffer for the source rank,
+     * so it is only valid until the next message from the same rank is received.
+     */
+    public static class Message {
+        private final int source;
+        private final int tag;
+        private final byte[] buffer;
+        private final int length;
+
+        private Message(int source, int tag, byte[] buffer, int length) {
+            this.source = source;
+            this.tag = tag;
+            this.buffer = buffer;
+            this.length = length;
+        }
+
+        public int getSource() {
+            return source;
+        }
+
+        public int getTag() {
+            return tag;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * @return A read-only view of the message content.
+         */
+        public ByteBuffer content() {
+            return ByteBuffer.wrap(buffer, 0, length).asReadOnlyBuffer();
+        }
+
+        /**
+         * @return The message content decoded as UTF-8 text.
+         */
+        public String text() {
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
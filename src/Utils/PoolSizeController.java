@@ -0,0 +1,212 @@
+package Utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static Utils.Config.POOL_TUNE_INTERVAL_MILLIS;
+
+/**
+ * Resizes the worker pool of the parallel mode to the concurrency with the best throughput.
+ *
+ * Every {@code POOL_TUNE_INTERVAL_MILLIS} the controller compares the reviews completed per second with
+ * the interval before and moves the pool size one thread at a time (hill climbing): it keeps moving in
+ * the same direction while throughput improves, turns around when throughput drops, and holds the size
+ * once a step changes throughput by less than 10%. Throughput only says something about the pool size
+ * while the pool is saturated, so the controller holds the size while the queue is empty and reviews
+ * hardly wait. On hyperthreaded hosts this finds out whether the sibling threads help the parser.
+ *
+ * The pool never grows beyond the CPUs the process may use: the available processors, further limited
+ * by the CPU quota of the container (cgroup v2 {@code cpu.max} or cgroup v1 {@code cpu.cfs_quota_us}).
+ * Every decision is logged with the measurements it was based on.
+ *
+ * Methods:
+ * - cpuLimit: Returns the number of CPUs the process may use.
+ * - record: Records a completed review and how long it waited in the queue.
+ * - start: Starts tuning the pool size.
+ * - stop: Stops tuning.
+ */
+public class PoolSizeController {
+    private static final double TOLERANCE = 0.10;
+    // Reviews waiting less than this on average with an empty queue mean the pool is not the bottleneck
+    private static final long SATURATED_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ThreadPoolExecutor pool;
+    private final int minSize;
+    private final int maxSize;
+    private final LongAdder completedReviews = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "pool-size-controller");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private long lastTuneNanos;
+    private double previousThroughput = Double.NaN;
+    private int direction = 1;
+
+    /**
+     * @param pool The pool to resize. Its core and maximum size are always set to the same value.
+     * @param minSize The smallest pool size.
+     * @param maxSize The largest pool size.
+     */
+    public PoolSizeController(ThreadPoolExecutor pool, int minSize, int maxSize) {
+        this.pool = pool;
+        this.minSize = Math.max(1, minSize);
+        this.maxSize = Math.max(this.minSize, maxSize);
+    }
+
+    /**
+     * Returns the number of CPUs the process may use, the available processors limited by the CPU
+     * quota of the container, rounded up.
+     *
+     * @return The CPU limit, at least 1.
+     */
+    public static int cpuLimit() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        double quota = cgroupCpuQuota();
+        if (quota > 0) {
+            return Math.max(1, Math.min(processors, (int) Math.ceil(quota)));
+        }
+        return processors;
+    }
+
+    /**
+     * Records a review completed by the pool.
+     *
+     * @param queuedNanos How long the review waited in the queue before its analysis started.
+     */
+    public void record(long queuedNanos) {
+        completedReviews.increment();
+        queueWaitNanos.add(queuedNanos);
+    }
+
+    /**
+     * Starts tuning the pool size every interval. Does nothing if tuning is disabled.
+     */
+    public void start() {
+        if (POOL_TUNE_INTERVAL_MILLIS <= 0 || minSize == maxSize) {
+            return;
+        }
+        AsyncLog.info("Pool size controller: " + pool.getCorePoolSize() + " threads, between " + minSize + " and " + maxSize);
+        lastTuneNanos = System.nanoTime();
+        scheduler.scheduleAtFixedRate(this::tune, POOL_TUNE_INTERVAL_MILLIS, POOL_TUNE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        scheduler.shutdown();
+    }
+
+    private void tune() {
+        try {
+            long now = System.nanoTime();
+            double elapsedSeconds = Math.max(1, now - lastTuneNanos) / 1e9;
+            lastTuneNanos = now;
+            long completed = completedReviews.sumThenReset();
+            long waited = queueWaitNanos.sumThenReset();
+            double throughput = completed / elapsedSeconds;
+            double averageWaitNanos = completed > 0 ? (double) waited / completed : 0.0;
+            boolean saturated = !pool.getQueue().isEmpty() || averageWaitNanos > SATURATED_WAIT_NANOS;
+
+            int size = pool.getCorePoolSize();
+            int next = size;
+            String reason;
+            if (!saturated) {
+                // The next saturated interval starts a new comparison
+                previousThroughput = Double.NaN;
+                reason = "not saturated";
+            } else if (Double.isNaN(previousThroughput)) {
+                next = size + direction;
+                reason = "probing";
+            } else if (throughput > previousThroughput * (1 + TOLERANCE)) {
+                next = size + direction;
+                reason = "throughput up";
+            } else if (throughput < previousThroughput * (1 - TOLERANCE)) {
+                direction = -direction;
+                next = size + direction;
+                reason = "throughput down, turning around";
+            } else {
+                reason = "converged";
+            }
+            if (next < minSize || next > maxSize) {
+                // Bounce off the bound, the next step probes the other direction
+                direction = -direction;
+                next = size;
+                reason += ", at the " + (size <= minSize ? "minimum" : "maximum");
+            }
+            if (saturated) {
+                previousThroughput = throughput;
+            }
+            if (next != size) {
+                resize(next);
+            }
+            AsyncLog.info(String.format(Locale.ROOT,
+                    "Pool size %d -> %d (%s): %.1f reviews/s, queue wait %.2f ms, queue depth %d",
+                    size, next, reason, throughput, averageWaitNanos / 1e6, pool.getQueue().size()));
+        } catch (RuntimeException e) {
+            AsyncLog.error("Error tuning the pool size: " + e);
+        }
+    }
+
+    /**
+     * Sets the core and maximum size of the pool, in the order that keeps core at most maximum.
+     * Surplus threads exit once they are idle and hand their analyzer back to the analyzer pool.
+     */
+    private void resize(int size) {
+        if (size > pool.getMaximumPoolSize()) {
+            pool.setMaximumPoolSize(size);
+            pool.setCorePoolSize(size);
+        } else {
+            pool.setCorePoolSize(size);
+            pool.setMaximumPoolSize(size);
+        }
+    }
+
+    /**
+     * Reads the CPU quota of the container from cgroup v2 or cgroup v1.
+     *
+     * @return The number of CPUs the quota allows, or -1 if there is no quota.
+     */
+    private static double cgroupCpuQuota() {
+        String cpuMax = readFirstLine(Paths.get("/sys/fs/cgroup/cpu.max"));
+        if (cpuMax != null) {
+            String[] fields = cpuMax.trim().split("\\s+");
+            if (fields.length == 2 && !fields[0].equals("max")) {
+                return quota(fields[0], fields[1]);
+            }
+            return -1;
+        }
+        String quota = readFirstLine(Paths.get("/sys/fs/cgroup/cpu/cpu.cfs_quota_us"));
+        String period = readFirstLine(Paths.get("/sys/fs/cgroup/cpu/cpu.cfs_period_us"));
+        if (quota != null && period != null) {
+            return quota(quota.trim(), period.trim());
+        }
+        return -1;
+    }
+
+    private static double quota(String quota, String period) {
+        try {
+            double quotaMicros = Double.parseDouble(quota);
+            double periodMicros = Double.parseDouble(period);
+            return quotaMicros > 0 && periodMicros > 0 ? quotaMicros / periodMicros : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String readFirstLine(Path path) {
+        try {
+            return Files.isReadable(path) ? Files.readAllLines(path, StandardCharsets.UTF_8).get(0) : null;
+        } catch (IOException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+}
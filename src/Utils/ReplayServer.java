@@ -0,0 +1,521 @@
+package Utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Local WebSocket server that replays a recorded corpus with the protocol of the sentiment server.
+ *
+ * A client subscribes by sending "topic:&lt;name&gt;" text messages, after which the server streams the
+ * corpus frames of the subscribed topics, in the same format as the live server. The topic of a frame
+ * is the name of its first field.
+ *
+ * The server sends one stream, however many clients share it: a single sender thread paces all frames
+ * at the configured {@link Rate} and picks the topic of every frame by its mix weight among the topics
+ * some client is subscribed to. The frame goes to one of the clients subscribed to its topic, in turn,
+ * so a mode with one connection per topic receives the configured rate and mix in total. The corpus is
+ * encoded into complete frames once, and every client has its own writer thread behind a bounded queue.
+ * A client whose queue is full is passed over until it catches up, so it only slows down its own topics;
+ * the stream waits only when no subscribed client has room.
+ *
+ * Only the parts of RFC 6455 that the JDK WebSocket client uses are implemented: the opening handshake,
+ * unfragmented text frames, ping/pong and close.
+ *
+ * Methods:
+ * - start: Starts accepting connections on a background thread.
+ * - stop: Closes the server socket and all connections.
+ */
+public class ReplayServer {
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int OPCODE_TEXT = 0x1;
+    private static final int OPCODE_CLOSE = 0x8;
+    private static final int OPCODE_PING = 0x9;
+    private static final int OPCODE_PONG = 0xA;
+    private static final int CLIENT_QUEUE_FRAMES = 256;
+    private static final int CLIENT_BUFFER_BYTES = 64 * 1024;
+
+    private final int port;
+    // Complete text frames, header and payload, ready to be written
+    private final Map<String, List<byte[]>> framesByTopic;
+    private final Map<String, Double> topicWeights;
+    private final Rate rate;
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private final Set<ClientSession> sessions = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sentFrames = new AtomicLong(0);
+    // Used by the sender thread only
+    private final Map<String, Integer> nextFrame = new HashMap<>();
+    private final Map<String, Integer> nextClient = new HashMap<>();
+    private final Random random = new Random();
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+
+    /**
+     * @param port The port to listen on.
+     * @param frames The corpus frames, grouped by topic when the server starts.
+     * @param topicWeights Weight of each topic in the stream, topics without a weight get 1.
+     * @param rate The rate of the stream, shared by all clients.
+     */
+    public ReplayServer(int port, List<String> frames, Map<String, Double> topicWeights, Rate rate) {
+        this.port = port;
+        this.topicWeights = topicWeights;
+        this.rate = rate;
+        this.framesByTopic = new LinkedHashMap<>();
+        for (String frame : frames) {
+            String topic = MessageParser.extractTopic(frame);
+            if (topic != null) {
+                framesByTopic.computeIfAbsent(topic, key -> new ArrayList<>())
+                        .add(encodeFrame(OPCODE_TEXT, frame.getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+    }
+
+    /**
+     * Starts accepting connections on a background thread.
+     *
+     * @throws IOException if the port cannot be bound.
+     */
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(port);
+        running = true;
+        Thread acceptThread = new Thread(this::acceptLoop, "replay-server");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        Thread senderThread = new Thread(this::sendLoop, "replay-sender");
+        senderThread.setDaemon(true);
+        senderThread.start();
+        System.out.println("Replay server listening on ws://localhost:" + port + "/ with topics " + framesByTopic.keySet());
+    }
+
+    /**
+     * Closes the server socket and all client connections.
+     */
+    public void stop() {
+        running = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing replay server: " + e.getMessage());
+        }
+        for (Socket client : clients) {
+            closeQuietly(client);
+        }
+    }
+
+    public long getSentFrames() {
+        return sentFrames.get();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread clientThread = new Thread(() -> serve(socket), "replay-client-" + socket.getPort());
+                clientThread.setDaemon(true);
+                clientThread.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("Error accepting connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        clients.add(socket);
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), CLIENT_BUFFER_BYTES);
+            if (!handshake(in, out)) {
+                return;
+            }
+            ClientSession session = new ClientSession(socket, out);
+            Thread writerThread = new Thread(session::writeLoop, "replay-writer-" + socket.getPort());
+            writerThread.setDaemon(true);
+            writerThread.start();
+            sessions.add(session);
+            try {
+                session.readLoop(in);
+            } finally {
+                sessions.remove(session);
+            }
+        } catch (IOException e) {
+            // The client went away
+        } finally {
+            clients.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Sends the stream: paces the frames at the rate, which starts over whenever no client is subscribed,
+     * and queues every frame for a client subscribed to its topic.
+     */
+    private void sendLoop() {
+        long startNanos = 0;
+        long nextSendNanos = 0;
+        boolean streaming = false;
+        while (running) {
+            if (!hasSubscribers()) {
+                // Nothing subscribed yet, or no frames for the subscribed topics
+                streaming = false;
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+                continue;
+            }
+            String topic = nextTopic();
+            if (topic == null) {
+                // Every subscribed client is behind, the stream waits for the first one to catch up
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                continue;
+            }
+            if (!streaming) {
+                streaming = true;
+                startNanos = System.nanoTime();
+                nextSendNanos = startNanos;
+            }
+            double framesPerSecond = rate.framesPerSecond((System.nanoTime() - startNanos) / 1e9);
+            if (framesPerSecond <= 0) {
+                // Paused, for example at the start of a ramp from 0
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+                nextSendNanos = System.nanoTime();
+                continue;
+            }
+            if (!Double.isInfinite(framesPerSecond)) {
+                nextSendNanos += (long) (1e9 / framesPerSecond);
+                long waitNanos = nextSendNanos - System.nanoTime();
+                if (waitNanos > 0) {
+                    LockSupport.parkNanos(waitNanos);
+                }
+            }
+            ClientSession client = nextClient(topic);
+            if (client == null) {
+                // The client unsubscribed while the sender waited, the slot of the frame is skipped
+                continue;
+            }
+            List<byte[]> frames = framesByTopic.get(topic);
+            int index = nextFrame.merge(topic, 1, Integer::sum) - 1;
+            // Only the sender thread adds to the queue, so the room seen by nextClient is still there
+            client.outbox.offer(frames.get(index % frames.size()));
+        }
+    }
+
+    private boolean hasSubscribers() {
+        for (ClientSession session : sessions) {
+            if (session.open) {
+                for (String topic : session.subscriptions) {
+                    if (framesByTopic.containsKey(topic)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Picks the topic of the next frame by its mix weight among the topics that an open client with room
+     * in its queue is subscribed to, or null if there is none.
+     */
+    private String nextTopic() {
+        Set<String> subscribed = new HashSet<>();
+        for (ClientSession session : sessions) {
+            if (session.isReady()) {
+                subscribed.addAll(session.subscriptions);
+            }
+        }
+        List<String> topics = new ArrayList<>();
+        double totalWeight = 0;
+        for (String topic : framesByTopic.keySet()) {
+            if (subscribed.contains(topic)) {
+                topics.add(topic);
+                totalWeight += topicWeights.getOrDefault(topic, 1.0);
+            }
+        }
+        if (topics.isEmpty() || totalWeight <= 0) {
+            return null;
+        }
+        double pick = random.nextDouble() * totalWeight;
+        for (String candidate : topics) {
+            pick -= topicWeights.getOrDefault(candidate, 1.0);
+            if (pick < 0) {
+                return candidate;
+            }
+        }
+        return topics.get(topics.size() - 1);
+    }
+
+    /**
+     * Returns the next of the open clients with room in their queue that are subscribed to a topic, in
+     * turn, or null if there is none.
+     */
+    private ClientSession nextClient(String topic) {
+        List<ClientSession> subscribers = new ArrayList<>();
+        for (ClientSession session : sessions) {
+            if (session.isReady() && session.subscriptions.contains(topic)) {
+                subscribers.add(session);
+            }
+        }
+        if (subscribers.isEmpty()) {
+            return null;
+        }
+        int turn = nextClient.merge(topic, 1, Integer::sum) - 1;
+        return subscribers.get(Math.floorMod(turn, subscribers.size()));
+    }
+
+    /**
+     * Builds an unmasked, unfragmented frame, header and payload, so that it is written at once.
+     */
+    private static byte[] encodeFrame(int opcode, byte[] payload) {
+        int headerBytes = payload.length < 126 ? 2 : payload.length <= 0xFFFF ? 4 : 10;
+        byte[] frame = new byte[headerBytes + payload.length];
+        frame[0] = (byte) (0x80 | opcode);
+        if (payload.length < 126) {
+            frame[1] = (byte) payload.length;
+        } else if (payload.length <= 0xFFFF) {
+            frame[1] = 126;
+            frame[2] = (byte) (payload.length >>> 8);
+            frame[3] = (byte) payload.length;
+        } else {
+            frame[1] = 127;
+            for (int i = 0; i < 8; i++) {
+                frame[2 + i] = (byte) ((long) payload.length >>> (56 - 8 * i));
+            }
+        }
+        System.arraycopy(payload, 0, frame, headerBytes, payload.length);
+        return frame;
+    }
+
+    private static boolean handshake(DataInputStream in, OutputStream out) throws IOException {
+        String key = null;
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Key")) {
+                key = line.substring(colon + 1).trim();
+            }
+        }
+        if (key == null) {
+            out.write("HTTP/1.1 400 Bad Request\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            return false;
+        }
+        String response = "HTTP/1.1 101 Switching Protocols\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: " + acceptKey(key) + "\r\n\r\n";
+        out.write(response.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        return true;
+    }
+
+    private static String acceptKey(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha1.digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                break;
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        if (b == -1 && line.size() == 0) {
+            return null;
+        }
+        return line.toString(StandardCharsets.US_ASCII);
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // Already closed
+        }
+    }
+
+    /**
+     * One connected client: its subscriptions, a reader for its messages and a writer that sends the
+     * frames queued for it by the sender thread of the server.
+     */
+    private class ClientSession {
+        private final Socket socket;
+        private final OutputStream out;
+        private final Set<String> subscriptions = ConcurrentHashMap.newKeySet();
+        private final BlockingQueue<byte[]> outbox = new ArrayBlockingQueue<>(CLIENT_QUEUE_FRAMES);
+        private volatile boolean open = true;
+
+        ClientSession(Socket socket, OutputStream out) {
+            this.socket = socket;
+            this.out = out;
+        }
+
+        boolean isReady() {
+            return open && outbox.remainingCapacity() > 0;
+        }
+
+        /**
+         * Writes the queued frames, flushing once the queue is drained, until the client is closed.
+         */
+        void writeLoop() {
+            List<byte[]> batch = new ArrayList<>();
+            try {
+                while (open) {
+                    byte[] frame = outbox.poll(100, TimeUnit.MILLISECONDS);
+                    if (frame == null) {
+                        continue;
+                    }
+                    batch.add(frame);
+                    outbox.drainTo(batch);
+                    synchronized (out) {
+                        for (byte[] queued : batch) {
+                            out.write(queued);
+                        }
+                        out.flush();
+                    }
+                    sentFrames.addAndGet(batch.size());
+                    batch.clear();
+                }
+            } catch (IOException e) {
+                // The client went away, closing the socket ends its reader as well
+                open = false;
+                closeQuietly(socket);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void readLoop(DataInputStream in) throws IOException {
+            try {
+                while (open) {
+                    int first = in.readUnsignedByte();
+                    int second = in.readUnsignedByte();
+                    int opcode = first & 0x0F;
+                    long length = second & 0x7F;
+                    if (length == 126) {
+                        length = in.readUnsignedShort();
+                    } else if (length == 127) {
+                        length = in.readLong();
+                    }
+                    byte[] mask = new byte[4];
+                    if ((second & 0x80) != 0) {
+                        in.readFully(mask);
+                    }
+                    byte[] payload = new byte[(int) length];
+                    in.readFully(payload);
+                    for (int i = 0; i < payload.length; i++) {
+                        payload[i] ^= mask[i & 3];
+                    }
+
+                    if (opcode == OPCODE_TEXT) {
+                        String message = new String(payload, StandardCharsets.UTF_8);
+                        if (message.startsWith("topic:")) {
+                            String topic = message.substring("topic:".length()).trim();
+                            subscriptions.add(topic);
+                            System.out.println("Client subscribed to " + topic);
+                        }
+                    } else if (opcode == OPCODE_PING) {
+                        writeFrame(OPCODE_PONG, payload);
+                    } else if (opcode == OPCODE_CLOSE) {
+                        writeFrame(OPCODE_CLOSE, payload);
+                        open = false;
+                    }
+                }
+            } catch (EOFException e) {
+                // The client closed the connection without a close frame
+            } finally {
+                open = false;
+            }
+        }
+
+        private void writeFrame(int opcode, byte[] payload) throws IOException {
+            byte[] frame = encodeFrame(opcode, payload);
+            synchronized (out) {
+                out.write(frame);
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Send rate of the replayed stream as a function of the time since the stream started, which is when
+     * the first client subscribed, or again after a time without subscribed clients.
+     *
+     * Formats accepted by {@link #parse(String)}:
+     * - max: as fast as possible
+     * - fixed:&lt;perSecond&gt;
+     * - ramp:&lt;fromPerSecond&gt;:&lt;toPerSecond&gt;:&lt;seconds&gt; then stays at the final rate
+     * - burst:&lt;basePerSecond&gt;:&lt;burstPerSecond&gt;:&lt;burstSeconds&gt;:&lt;periodSeconds&gt;
+     */
+    public interface Rate {
+        /**
+         * @param elapsedSeconds Seconds since the stream started.
+         * @return The target rate in frames per second, infinity for as fast as possible and 0 to pause.
+         */
+        double framesPerSecond(double elapsedSeconds);
+
+        static Rate parse(String spec) {
+            String[] parts = spec.trim().toLowerCase(Locale.ROOT).split(":");
+            switch (parts[0]) {
+                case "max":
+                    return elapsed -> Double.POSITIVE_INFINITY;
+                case "fixed": {
+                    double perSecond = Double.parseDouble(parts[1]);
+                    return elapsed -> perSecond;
+                }
+                case "ramp": {
+                    double from = Double.parseDouble(parts[1]);
+                    double to = Double.parseDouble(parts[2]);
+                    double seconds = Double.parseDouble(parts[3]);
+                    return elapsed -> elapsed >= seconds ? to : from + (to - from) * elapsed / seconds;
+                }
+                case "burst": {
+                    double base = Double.parseDouble(parts[1]);
+                    double burst = Double.parseDouble(parts[2]);
+                    double burstSeconds = Double.parseDouble(parts[3]);
+                    double periodSeconds = Double.parseDouble(parts[4]);
+                    return elapsed -> elapsed % periodSeconds < burstSeconds ? burst : base;
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown rate: " + spec);
+            }
+        }
+    }
+}
@@ -0,0 +1,679 @@
+package Utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static Utils.Config.RESULTS_DIR;
+import static Utils.Config.RESULTS_QUEUE_CAPACITY;
+import static Utils.Config.RESULTS_SEGMENT_BYTES;
+
+/**
+ * Stores the analyzed reviews in binary segment files, so downstream jobs can read the results.
+ *
+ * The store is a directory of memory-mapped segment files, like the {@link FrameRecorder} log, but with
+ * fixed-width records of {@code RECORD_BYTES}, so record n is found without scanning:
+ * [long reviewId][long asinHash][10 bytes asin][byte sentiment][short sentenceCount][byte minScore]
+ * [byte maxScore][short count per sentiment class]*5[float overall][long unixReviewTime][long analyzedEpochMillis]
+ * The first {@code RECORD_BYTES} of a segment are its header:
+ * [long recordCount][long segmentBytes][int recordBytes]
+ * The segment size is taken from the existing segments when a store is opened again, so a different
+ * -Dresults.segmentBytes cannot change which segment a review id is in. The review id is the number of the
+ * record in the store, the asin hash is the 64-bit FNV-1a hash of the asin, so other readers can match
+ * products without decoding the asin.
+ *
+ * Analysis threads only queue their results; a single writer thread appends them in batches, then updates
+ * the record counts in the segment headers and publishes the new record count. Records below the published
+ * count are never changed again, so any number of threads can read while the writer appends. An index
+ * sorted by asin maps every product to its records, for lookups and range scans over asins. The index is
+ * kept in memory only: it is rebuilt from the segments whenever a store is opened, and new records are
+ * appended after the existing ones.
+ *
+ * Other processes read the results with {@link #openReadOnly}, which maps the segments read-only and starts
+ * no writer. Such a store sees the records that were in the segment headers when it was opened or last
+ * refreshed; {@link #refresh} indexes the records the writing process added since.
+ *
+ * The store is enabled with -Dresults.dir=&lt;directory&gt;, otherwise {@link #append} does nothing.
+ *
+ * Methods:
+ * - fromConfig: Creates the store configured with the results.* system properties.
+ * - openReadOnly: Opens an existing store for reading, for example in another process.
+ * - append: Queues an analyzed review to be written.
+ * - read: Reads a record by its review id.
+ * - lookup: Reads all records of a product.
+ * - range: Reads the records of the products in a range of asins.
+ * - size: Returns the number of records that can be read.
+ * - refresh: Indexes the records that another process has written since the store was opened.
+ * - close: Writes the queued results and closes the store.
+ */
+public class ResultStore {
+    public static final int RECORD_BYTES = 64;
+    static final String SEGMENT_PREFIX = "results-";
+    static final String SEGMENT_SUFFIX = ".dat";
+    private static final int ASIN_BYTES = 10;
+    private static final int WRITE_BATCH = 1024;
+    // Positions of the header fields in a segment
+    private static final int RECORD_COUNT_OFFSET = 0;
+    private static final int SEGMENT_BYTES_OFFSET = 8;
+    private static final int RECORD_BYTES_OFFSET = 16;
+
+    private final Path directory;
+    private final boolean readOnly;
+    private final long recordsPerSegment;
+    private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+    private final ConcurrentSkipListMap<String, RecordList> asinIndex = new ConcurrentSkipListMap<>();
+    private final BlockingQueue<PendingResult> queue;
+    private final AtomicLong droppedResults = new AtomicLong();
+    private final Thread writer;
+    // Records below this number are written and indexed, published by the writer thread
+    private volatile long committedRecords;
+    private volatile boolean closed;
+
+    /**
+     * @param directory The directory of the store, created if needed. Existing records are indexed.
+     * @param segmentBytes The size of a new segment file, rounded down to whole records. A store that
+     *                     already has segments keeps their size.
+     * @param queueCapacity The number of results that may wait for the writer before new ones are dropped.
+     */
+    public ResultStore(String directory, long segmentBytes, int queueCapacity) throws IOException {
+        this(directory == null ? null : Paths.get(directory), segmentBytes, queueCapacity, false);
+    }
+
+    private ResultStore(Path directory, long segmentBytes, int queueCapacity, boolean readOnly) throws IOException {
+        this.directory = directory;
+        this.readOnly = readOnly;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        long bytes = Math.min(Integer.MAX_VALUE, Math.max(4096, segmentBytes));
+        if (directory == null) {
+            this.recordsPerSegment = bytes / RECORD_BYTES - 1;
+            this.writer = null;
+            return;
+        }
+        if (!readOnly) {
+            Files.createDirectories(directory);
+        }
+        long storedBytes = storedSegmentBytes(directory);
+        if (storedBytes > 0 && storedBytes != bytes / RECORD_BYTES * RECORD_BYTES && !readOnly) {
+            System.out.println("Result store " + directory + " has segments of " + storedBytes
+                    + " bytes, the configured size of " + bytes + " bytes is ignored.");
+        }
+        if (storedBytes > 0) {
+            bytes = storedBytes;
+        } else if (readOnly) {
+            throw new IOException("No result segments in " + directory);
+        }
+        this.recordsPerSegment = bytes / RECORD_BYTES - 1;
+        loadSegments();
+        if (readOnly) {
+            this.writer = null;
+            return;
+        }
+        this.writer = new Thread(this::writeResults, "result-store-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        System.out.println("Storing results in " + directory.toAbsolutePath() + " (" + committedRecords + " existing records)");
+    }
+
+    /**
+     * Opens an existing store for reading. The segments are mapped read-only and no writer is started,
+     * so this can be used while another process writes the store.
+     *
+     * @param directory The directory of the store.
+     * @return The store, with the records written so far indexed.
+     * @throws IOException If the directory has no segments or they cannot be read.
+     */
+    public static ResultStore openReadOnly(String directory) throws IOException {
+        return new ResultStore(Paths.get(directory), 0, 1, true);
+    }
+
+    /**
+     * Creates the store configured with -Dresults.dir, -Dresults.segmentBytes and -Dresults.queueCapacity.
+     * If the store is disabled or the directory cannot be used, the returned store ignores all results.
+     */
+    public static ResultStore fromConfig() {
+        try {
+            return new ResultStore(RESULTS_DIR, RESULTS_SEGMENT_BYTES, RESULTS_QUEUE_CAPACITY);
+        } catch (IOException e) {
+            System.err.println("Error opening results directory " + RESULTS_DIR + ": " + e.getMessage());
+            try {
+                return new ResultStore(null, RESULTS_SEGMENT_BYTES, RESULTS_QUEUE_CAPACITY);
+            } catch (IOException impossible) {
+                throw new IllegalStateException(impossible);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Queues an analyzed review for the writer thread. Never blocks: if the writer falls behind and
+     * the queue is full, or the store is already closed, the result is dropped and counted.
+     *
+     * @param review The parsed review.
+     * @param result The sentiment of the review.
+     */
+    public void append(Review review, SentimentResult result) {
+        if (directory == null) {
+            return;
+        }
+        if (readOnly) {
+            throw new UnsupportedOperationException("The result store " + directory + " is opened read-only");
+        }
+        if (closed) {
+            if (droppedResults.getAndIncrement() % 10_000 == 0) {
+                AsyncLog.warn("Result store is closed, " + droppedResults.get() + " results dropped so far");
+            }
+            return;
+        }
+        if (!queue.offer(new PendingResult(review, result, System.currentTimeMillis()))) {
+            if (droppedResults.getAndIncrement() % 10_000 == 0) {
+                AsyncLog.warn("Result store is behind, " + droppedResults.get() + " results dropped so far");
+            }
+        }
+    }
+
+    /**
+     * @return The number of records that can be read, the review ids are 0 to size - 1.
+     */
+    public long size() {
+        return committedRecords;
+    }
+
+    /**
+     * Indexes the records that the writing process has added to the segment headers since this read-only
+     * store was opened or last refreshed. A store that writes its own records is always up to date.
+     *
+     * @return The number of records that can be read.
+     */
+    public synchronized long refresh() throws IOException {
+        if (readOnly && !closed) {
+            loadSegments();
+        }
+        return committedRecords;
+    }
+
+    /**
+     * Reads a record.
+     *
+     * @param reviewId The id of the record.
+     * @return The record, or null if it has not been written yet.
+     */
+    public StoredResult read(long reviewId) {
+        if (reviewId < 0 || reviewId >= committedRecords) {
+            return null;
+        }
+        MappedByteBuffer segment = segments.get((int) (reviewId / recordsPerSegment));
+        return decode(segment, recordOffset(reviewId));
+    }
+
+    /**
+     * Reads all records of a product, in the order they were written.
+     *
+     * @param asin The product id.
+     * @return The records, empty if the product has none.
+     */
+    public List<StoredResult> lookup(String asin) {
+        List<StoredResult> results = new ArrayList<>();
+        RecordList records = asin == null ? null : asinIndex.get(storedAsin(asin));
+        if (records != null) {
+            records.readInto(this, results, Integer.MAX_VALUE);
+        }
+        return results;
+    }
+
+    /**
+     * Reads the records of the products whose asin is in a range, ordered by asin.
+     *
+     * @param fromAsin The first asin of the range, inclusive.
+     * @param toAsin The end of the range, exclusive.
+     * @param limit The maximum number of records to return.
+     * @return The records of the range, at most limit.
+     */
+    public List<StoredResult> range(String fromAsin, String toAsin, int limit) {
+        List<StoredResult> results = new ArrayList<>();
+        for (RecordList records : asinIndex.subMap(fromAsin, true, toAsin, false).values()) {
+            if (results.size() >= limit) {
+                break;
+            }
+            records.readInto(this, results, limit);
+        }
+        return results;
+    }
+
+    /**
+     * Writes the queued results, publishes them and closes the store.
+     */
+    public void close() {
+        if (directory == null || closed) {
+            return;
+        }
+        closed = true;
+        if (readOnly) {
+            // Mappings are released by the garbage collector
+            return;
+        }
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Results queued after the writer's last batch are not written, so they count as dropped
+        List<PendingResult> unwritten = new ArrayList<>();
+        queue.drainTo(unwritten);
+        droppedResults.addAndGet(unwritten.size());
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        System.out.println("Result store closed with " + committedRecords + " records, " + droppedResults.get() + " dropped.");
+    }
+
+    /**
+     * Appends the queued results in batches until the store is closed, then writes what is left.
+     */
+    private void writeResults() {
+        List<PendingResult> batch = new ArrayList<>(WRITE_BATCH);
+        while (true) {
+            try {
+                PendingResult first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, WRITE_BATCH - batch.size());
+            if (batch.isEmpty()) {
+                if (closed) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                writeBatch(batch);
+            } catch (IOException e) {
+                System.err.println("Error writing results, the result store is stopped: " + e.getMessage());
+                closed = true;
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<PendingResult> batch) throws IOException {
+        long next = committedRecords;
+        for (PendingResult pending : batch) {
+            int segmentNumber = (int) (next / recordsPerSegment);
+            if (segmentNumber == segments.size()) {
+                segments.add(mapSegment(segmentNumber, true));
+            }
+            encode(segments.get(segmentNumber), recordOffset(next), next, pending);
+            next++;
+        }
+        // The headers of all segments written by this batch are updated before the records are published
+        long first = committedRecords;
+        for (int segmentNumber = (int) (first / recordsPerSegment); segmentNumber <= (next - 1) / recordsPerSegment; segmentNumber++) {
+            long segmentEnd = Math.min(next, (segmentNumber + 1) * recordsPerSegment);
+            segments.get(segmentNumber).putLong(RECORD_COUNT_OFFSET, segmentEnd - segmentNumber * recordsPerSegment);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            indexRecord(batch.get(i).review.getAsin(), first + i);
+        }
+        committedRecords = next;
+    }
+
+    private void encode(MappedByteBuffer segment, int offset, long reviewId, PendingResult pending) {
+        Review review = pending.review;
+        byte[] sentenceScores = pending.result.getSentenceScores();
+        int[] classCounts = new int[SentimentAnalyzer.SENTIMENT_CLASSES];
+        int min = SentimentAnalyzer.SENTIMENT_CLASSES - 1;
+        int max = 0;
+        for (byte score : sentenceScores) {
+            int sentimentClass = Math.max(0, Math.min(SentimentAnalyzer.SENTIMENT_CLASSES - 1, score));
+            classCounts[sentimentClass]++;
+            min = Math.min(min, sentimentClass);
+            max = Math.max(max, sentimentClass);
+        }
+        if (sentenceScores.length == 0) {
+            min = max = pending.result.getSentimentScore();
+        }
+
+        byte[] asin = new byte[ASIN_BYTES];
+        if (review.getAsin() != null) {
+            byte[] asinBytes = storedAsin(review.getAsin()).getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(asinBytes, 0, asin, 0, asinBytes.length);
+        }
+
+        int position = offset;
+        segment.putLong(position, reviewId);
+        segment.putLong(position += Long.BYTES, asinHash(review.getAsin()));
+        position += Long.BYTES;
+        for (int i = 0; i < ASIN_BYTES; i++) {
+            segment.put(position + i, asin[i]);
+        }
+        position += ASIN_BYTES;
+        segment.put(position++, (byte) pending.result.getSentimentScore());
+        segment.putShort(position, (short) Math.min(Short.MAX_VALUE, sentenceScores.length));
+        position += Short.BYTES;
+        segment.put(position++, (byte) min);
+        segment.put(position++, (byte) max);
+        for (int count : classCounts) {
+            segment.putShort(position, (short) Math.min(Short.MAX_VALUE, count));
+            position += Short.BYTES;
+        }
+        segment.putFloat(position, (float) review.getOverall());
+        segment.putLong(position += Float.BYTES, review.getUnixReviewTime());
+        segment.putLong(position + Long.BYTES, pending.analyzedEpochMillis);
+    }
+
+    private StoredResult decode(MappedByteBuffer segment, int offset) {
+        int position = offset;
+        long reviewId = segment.getLong(position);
+        long asinHash = segment.getLong(position += Long.BYTES);
+        position += Long.BYTES;
+        byte[] asin = new byte[ASIN_BYTES];
+        int asinLength = 0;
+        while (asinLength < ASIN_BYTES && (asin[asinLength] = segment.get(position + asinLength)) != 0) {
+            asinLength++;
+        }
+        position += ASIN_BYTES;
+        int sentiment = segment.get(position++);
+        int sentenceCount = segment.getShort(position);
+        position += Short.BYTES;
+        int min = segment.get(position++);
+        int max = segment.get(position++);
+        int[] classCounts = new int[SentimentAnalyzer.SENTIMENT_CLASSES];
+        for (int i = 0; i < SentimentAnalyzer.SENTIMENT_CLASSES; i++) {
+            classCounts[i] = segment.getShort(position);
+            position += Short.BYTES;
+        }
+        float overall = segment.getFloat(position);
+        long unixReviewTime = segment.getLong(position += Float.BYTES);
+        long analyzedEpochMillis = segment.getLong(position + Long.BYTES);
+        String asinText = asinLength == 0 ? null : new String(asin, 0, asinLength, StandardCharsets.UTF_8);
+        return new StoredResult(reviewId, asinHash, asinText, sentiment, sentenceCount, min, max, classCounts,
+                overall, unixReviewTime, analyzedEpochMillis);
+    }
+
+    private void indexRecord(String asin, long reviewId) {
+        if (asin != null) {
+            asinIndex.computeIfAbsent(storedAsin(asin), key -> new RecordList()).add(reviewId);
+        }
+    }
+
+    /**
+     * Cuts an asin to the bytes a record holds, without splitting a character. Asins are 10 ASCII
+     * characters, so this only changes malformed ones.
+     */
+    private static String storedAsin(String asin) {
+        String stored = asin;
+        while (stored.getBytes(StandardCharsets.UTF_8).length > ASIN_BYTES) {
+            stored = stored.substring(0, stored.length() - 1);
+        }
+        return stored;
+    }
+
+    private int recordOffset(long reviewId) {
+        // The first record slot of a segment is its header
+        return (int) ((reviewId % recordsPerSegment + 1) * RECORD_BYTES);
+    }
+
+    /**
+     * Maps the existing segments after the published records and indexes their records, up to the first
+     * segment that is not full. Appending continues in that segment.
+     */
+    private void loadSegments() throws IOException {
+        long records = committedRecords;
+        while (true) {
+            int segmentNumber = (int) (records / recordsPerSegment);
+            if (segmentNumber == segments.size()) {
+                MappedByteBuffer segment = mapSegment(segmentNumber, false);
+                if (segment == null) {
+                    break;
+                }
+                segments.add(segment);
+            }
+            MappedByteBuffer segment = segments.get(segmentNumber);
+            long segmentStart = segmentNumber * recordsPerSegment;
+            long segmentEnd = segmentStart + Math.min(recordsPerSegment, segment.getLong(RECORD_COUNT_OFFSET));
+            for (long reviewId = records; reviewId < segmentEnd; reviewId++) {
+                indexRecord(decode(segment, recordOffset(reviewId)).getAsin(), reviewId);
+            }
+            records = Math.max(records, segmentEnd);
+            committedRecords = records;
+            if (segmentEnd < segmentStart + recordsPerSegment) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Maps a segment, read-write or read-only depending on the store.
+     *
+     * @param create Whether a missing segment is created, otherwise null is returned for it.
+     * @return The mapped segment, or null if it does not exist or is still being created by the writer.
+     */
+    private MappedByteBuffer mapSegment(int segmentNumber, boolean create) throws IOException {
+        Path path = segmentPath(directory, segmentNumber);
+        long bytes = (recordsPerSegment + 1) * RECORD_BYTES;
+        if (!create && !Files.exists(path)) {
+            return null;
+        }
+        if (readOnly) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                return channel.size() < bytes ? null : channel.map(FileChannel.MapMode.READ_ONLY, 0, bytes);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            if (segment.getLong(SEGMENT_BYTES_OFFSET) == 0) {
+                // New segments, and those of stores written before the header had the sizes, get them now
+                segment.putLong(SEGMENT_BYTES_OFFSET, bytes);
+                segment.putInt(RECORD_BYTES_OFFSET, RECORD_BYTES);
+            }
+            return segment;
+        }
+    }
+
+    /**
+     * Reads the segment size from the header of the first segment. Segments written before the header had
+     * the size are as large as their mapping, so their file size is used.
+     *
+     * @return The size of the segments of the store, or -1 if the store has no segments yet.
+     */
+    private static long storedSegmentBytes(Path directory) throws IOException {
+        Path path = segmentPath(directory, 0);
+        if (!Files.exists(path)) {
+            return -1;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(RECORD_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Read the whole header
+            }
+            if (header.hasRemaining()) {
+                return -1;
+            }
+            int recordBytes = header.getInt(RECORD_BYTES_OFFSET);
+            if (recordBytes != 0 && recordBytes != RECORD_BYTES) {
+                throw new IOException("Result store " + directory + " has records of " + recordBytes
+                        + " bytes, expected " + RECORD_BYTES);
+            }
+            long segmentBytes = header.getLong(SEGMENT_BYTES_OFFSET);
+            return segmentBytes > 0 ? segmentBytes : channel.size();
+        }
+    }
+
+    private static Path segmentPath(Path directory, int segmentNumber) {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, segmentNumber, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * @return The 64-bit FNV-1a hash of the UTF-8 bytes of an asin, 0 for a missing asin.
+     */
+    public static long asinHash(String asin) {
+        if (asin == null) {
+            return 0;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : asin.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * The review ids of one product. Only the writer thread adds ids; it stores the id before it
+     * publishes the new count, so readers see a consistent prefix without locking.
+     */
+    private static class RecordList {
+        private volatile long[] ids = new long[4];
+        private volatile int count;
+
+        private void add(long reviewId) {
+            long[] current = ids;
+            if (count == current.length) {
+                long[] grown = new long[current.length * 2];
+                System.arraycopy(current, 0, grown, 0, count);
+                current = grown;
+                ids = grown;
+            }
+            current[count] = reviewId;
+            count = count + 1;
+        }
+
+        private void readInto(ResultStore store, List<StoredResult> results, int limit) {
+            int visible = count;
+            long[] current = ids;
+            for (int i = 0; i < visible && results.size() < limit; i++) {
+                StoredResult stored = store.read(current[i]);
+                if (stored != null) {
+                    results.add(stored);
+                }
+            }
+        }
+    }
+
+    /**
+     * An analyzed review waiting for the writer thread.
+     */
+    private static class PendingResult {
+        private final Review review;
+        private final SentimentResult result;
+        private final long analyzedEpochMillis;
+
+        private PendingResult(Review review, SentimentResult result, long analyzedEpochMillis) {
+            this.review = review;
+            this.result = result;
+            this.analyzedEpochMillis = analyzedEpochMillis;
+        }
+    }
+
+    /**
+     * A record read from the store.
+     */
+    public static class StoredResult {
+        private final long reviewId;
+        private final long asinHash;
+        private final String asin;
+        private final int sentimentScore;
+        private final int sentenceCount;
+        private final int minScore;
+        private final int maxScore;
+        private final int[] classCounts;
+        private final double overall;
+        private final long unixReviewTime;
+        private final long analyzedEpochMillis;
+
+        private StoredResult(long reviewId, long asinHash, String asin, int sentimentScore, int sentenceCount,
+                             int minScore, int maxScore, int[] classCounts, double overall,
+                             long unixReviewTime, long analyzedEpochMillis) {
+            this.reviewId = reviewId;
+            this.asinHash = asinHash;
+            this.asin = asin;
+            this.sentimentScore = sentimentScore;
+            this.sentenceCount = sentenceCount;
+            this.minScore = minScore;
+            this.maxScore = maxScore;
+            this.classCounts = classCounts;
+            this.overall = overall;
+            this.unixReviewTime = unixReviewTime;
+            this.analyzedEpochMillis = analyzedEpochMillis;
+        }
+
+        public long getReviewId() {
+            return reviewId;
+        }
+
+        public long getAsinHash() {
+            return asinHash;
+        }
+
+        /**
+         * @return The asin of the product, cut to 10 bytes, or null if the review had none.
+         */
+        public String getAsin() {
+            return asin;
+        }
+
+        public int getSentimentScore() {
+            return sentimentScore;
+        }
+
+        public String getSentiment() {
+            return SentimentAnalyzer.scoreToSentiment(sentimentScore);
+        }
+
+        public int getSentenceCount() {
+            return sentenceCount;
+        }
+
+        public int getMinScore() {
+            return minScore;
+        }
+
+        public int getMaxScore() {
+            return maxScore;
+        }
+
+        /**
+         * @return The number of sentences of every sentiment class, from Very Negative to Very Positive.
+         */
+        public int[] getClassCounts() {
+            return classCounts.clone();
+        }
+
+        /**
+         * @return The star rating of the review, NaN if the review had none.
+         */
+        public double getOverall() {
+            return overall;
+        }
+
+        public long getUnixReviewTime() {
+            return unixReviewTime;
+        }
+
+        public long getAnalyzedEpochMillis() {
+            return analyzedEpochMillis;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package Utils;
+
+/**
+ * The fields of a review message that are used after parsing.
+ *
+ * Fields that are missing from the message are null for text, NaN for the rating and 0 for the review time.
+ */
+public class Review {
+    private final String topic;
+    private final String asin;
+    private final String reviewText;
+    private final double overall;
+    private final long unixReviewTime;
+
+    public Review(String topic, String asin, String reviewText, double overall, long unixReviewTime) {
+        this.topic = topic;
+        this.asin = asin;
+        this.reviewText = reviewText;
+        this.overall = overall;
+        this.unixReviewTime = unixReviewTime;
+    }
+
+    /**
+     * @return The topic the review was published on, the name of the first field of the message.
+     */
+    public String getTopic() {
+        return topic;
+    }
+
+    /**
+     * @return The Amazon product id of the reviewed product.
+     */
+    public String getAsin() {
+        return asin;
+    }
+
+    public String getReviewText() {
+        return reviewText;
+    }
+
+    /**
+     * @return The star rating of the review, from 1 to 5.
+     */
+    public double getOverall() {
+        return overall;
+    }
+
+    /**
+     * @return The time of the review in seconds since the epoch.
+     */
+    public long getUnixReviewTime() {
+        return unixReviewTime;
+    }
+}
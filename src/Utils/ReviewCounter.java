@@ -1,30 +1,83 @@
 package Utils;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.Locale;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+
+import static Utils.Config.METRICS_INTERVAL_MILLIS;
+import static Utils.Config.METRICS_MAX_FILE_BYTES;
 /**
  * Tracks the number of reviews analyzed per second and logs the count a file.
  *
+ * Every interval ({@code METRICS_INTERVAL_MILLIS}, sub-second intervals are allowed) one timestamped JSON
+ * record is handed to a {@link MetricsWriter}, which keeps the file open and writes off the hot path.
+ * A record holds the throughput, the queue depth, the number of reviews in flight, the pool utilization,
+ * the GC pause time of the interval, the end-to-end latency percentiles and the number of log records
+ * dropped by {@link AsyncLog}. The gauges are supplied by the implementation mode through {@link #setGauges}.
+ * When the mode registers an {@link AdmissionController}, the reviews it shed and degraded in the interval are
+ * logged and added to the record as well.
+ *
+ * Reviews can also be recorded with the timestamps of their stages: arrival in onText, end of parsing,
+ * start of analysis and end of analysis. Every stage has its own lock-free latency histogram, and the
+ * p50/p90/p99/p99.9/max of each stage are logged every interval, which separates queueing delay from NLP time.
+ *
  * Methods:
- * - startCounting: Starts tracking and logging the review count every second.
- * - increment: Increments the review count.
- * - stop: Stops the scheduled counting task.
+ * - startCounting: Starts tracking and logging the review count every interval.
+ * - increment: Increments the review count, optionally recording the stage timestamps of the review.
+ * - setGauges: Registers the queue depth, in-flight and pool utilization gauges of the mode.
+ * - setAdmissionController: Registers the admission controller whose shed and degraded counts are reported.
+ * - stop: Stops the scheduled counting task and closes the metrics file.
  */
 public class ReviewCounter {
     private final AtomicInteger reviewCount = new AtomicInteger(0);
+    private final LatencyHistogram parseLatency = new LatencyHistogram();
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+    private final LatencyHistogram analysisLatency = new LatencyHistogram();
+    private final LatencyHistogram endToEndLatency = new LatencyHistogram();
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-    private final String outputFilePath;
+    private final MetricsWriter metricsWriter;
+    private final long intervalMillis = Math.max(1, METRICS_INTERVAL_MILLIS);
+    private volatile IntSupplier queueDepth = () -> 0;
+    private volatile IntSupplier inFlight = () -> 0;
+    private volatile DoubleSupplier poolUtilization = () -> 0.0;
+    private volatile AdmissionController admissionController;
+    private long lastGcMillis = totalGcMillis();
+    private long lastReportNanos = System.nanoTime();
+
     public ReviewCounter(String outputFilePath) {
-        this.outputFilePath = outputFilePath;
+        this.metricsWriter = new MetricsWriter(outputFilePath, METRICS_MAX_FILE_BYTES);
     }
     /**
-     * Starts counting reviews and logs the rate every second.
+     * Starts counting reviews and logs the rate every interval.
      */
     public void startCounting() {
-        scheduler.scheduleAtFixedRate(this::printAndSaveRate, 1, 1, TimeUnit.SECONDS);
+        lastReportNanos = System.nanoTime();
+        scheduler.scheduleAtFixedRate(this::printAndSaveRate, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+    /**
+     * Registers the gauges that are sampled at the end of every interval.
+     *
+     * @param queueDepth Number of reviews waiting to be analyzed.
+     * @param inFlight Number of reviews being analyzed.
+     * @param poolUtilization Fraction of the analysis workers that are busy, from 0 to 1.
+     */
+    public void setGauges(IntSupplier queueDepth, IntSupplier inFlight, DoubleSupplier poolUtilization) {
+        this.queueDepth = queueDepth;
+        this.inFlight = inFlight;
+        this.poolUtilization = poolUtilization;
+    }
+    /**
+     * Registers the admission controller of the mode.
+     *
+     * @param admissionController The controller whose shed and degraded counts are reported every interval.
+     */
+    public void setAdmissionController(AdmissionController admissionController) {
+        this.admissionController = admissionController;
     }
     /**
      * Increments the review count.
@@ -32,24 +85,96 @@ public class ReviewCounter {
     public void increment() {
         reviewCount.incrementAndGet();
     }
+    /**
+     * Increments the review count and records the latency of every stage of the review.
+     * All timestamps come from {@link System#nanoTime()} on the same machine. The analysis time is also
+     * reported to the {@link StartupProfiler} until the process reaches steady state.
+     *
+     * @param arrivedNanos When the message arrived in onText.
+     * @param parsedNanos When the review text was extracted from the message.
+     * @param startedNanos When the analysis of the review started.
+     * @param finishedNanos When the analysis of the review finished.
+     */
+    public void increment(long arrivedNanos, long parsedNanos, long startedNanos, long finishedNanos) {
+        reviewCount.incrementAndGet();
+        parseLatency.record(parsedNanos - arrivedNanos);
+        queueLatency.record(startedNanos - parsedNanos);
+        analysisLatency.record(finishedNanos - startedNanos);
+        endToEndLatency.record(finishedNanos - arrivedNanos);
+        StartupProfiler.recordResult(finishedNanos - startedNanos);
+    }
     private void printAndSaveRate() {
         int count = reviewCount.getAndSet(0);
-        String message = "Analyzed Reviews per Second: " + count;
-        System.out.println(message);
-        saveToFile(message);
-    }
-    private synchronized void saveToFile(String message) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFilePath, true))) {
-            writer.write(message);
-            writer.newLine();
-        } catch (IOException e) {
-            System.err.println("Error writing to file: " + e.getMessage());
+        LatencyHistogram.Snapshot endToEnd = endToEndLatency.snapshotAndReset();
+        LatencyHistogram.Snapshot parse = parseLatency.snapshotAndReset();
+        LatencyHistogram.Snapshot queue = queueLatency.snapshotAndReset();
+        LatencyHistogram.Snapshot analysis = analysisLatency.snapshotAndReset();
+        long now = System.nanoTime();
+        double elapsedSeconds = Math.max(1, now - lastReportNanos) / 1e9;
+        lastReportNanos = now;
+        long gcMillis = totalGcMillis();
+        long gcPauseMillis = gcMillis - lastGcMillis;
+        lastGcMillis = gcMillis;
+
+        AdmissionController admission = admissionController;
+        long shed = admission != null ? admission.getShedAndReset() : 0;
+        long degraded = admission != null ? admission.getDegradedAndReset() : 0;
+
+        double reviewsPerSecond = count / elapsedSeconds;
+        AsyncLog.info("Analyzed Reviews per Second: " + Math.round(reviewsPerSecond));
+        if (shed > 0 || degraded > 0) {
+            AsyncLog.warn("Over the latency budget: " + shed + " reviews shed, " + degraded + " reviews degraded");
+        }
+
+        metricsWriter.write(String.format(Locale.ROOT,
+                "{\"timestamp\":\"%s\",\"intervalMillis\":%d,\"reviews\":%d,\"reviewsPerSecond\":%.2f,"
+                        + "\"queueDepth\":%d,\"inFlight\":%d,\"poolUtilization\":%.3f,\"gcPauseMillis\":%d,"
+                        + "\"latencyP50Millis\":%.3f,\"latencyP99Millis\":%.3f,\"logDroppedRecords\":%d,\"shed\":%d,\"degraded\":%d}",
+                Instant.now(), intervalMillis, count, reviewsPerSecond,
+                queueDepth.getAsInt(), inFlight.getAsInt(), poolUtilization.getAsDouble(), gcPauseMillis,
+                endToEnd.percentile(50) / 1e6, endToEnd.percentile(99) / 1e6, AsyncLog.getDroppedRecords(), shed, degraded));
+
+        printLatencies(parse, queue, analysis, endToEnd);
+        printCacheStatistics();
+    }
+    private void printLatencies(LatencyHistogram.Snapshot parse, LatencyHistogram.Snapshot queue,
+                                LatencyHistogram.Snapshot analysis, LatencyHistogram.Snapshot endToEnd) {
+        if (endToEnd.getTotalCount() > 0) {
+            AsyncLog.info("Latency parse:      " + parse.summary());
+            AsyncLog.info("Latency queue:      " + queue.summary());
+            AsyncLog.info("Latency analysis:   " + analysis.summary());
+            AsyncLog.info("Latency end-to-end: " + endToEnd.summary());
+        }
+    }
+    private void printCacheStatistics() {
+        SentimentCache cache = SentimentAnalyzer.getSentenceCache();
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+        if (hits + misses > 0) {
+            AsyncLog.info(String.format(Locale.ROOT, "Sentence cache: %d hits, %d misses (%.1f%% hit rate), %d/%d sentences",
+                    hits, misses, 100.0 * hits / (hits + misses), cache.size(), cache.getCapacity()));
+        }
+    }
+    /**
+     * Sums the collection time of the collectors that pause the application. The beans of concurrent
+     * cycles, such as "G1 Concurrent GC", "ZGC Cycles" or "Shenandoah Cycles", time work that runs
+     * alongside the application and are left out.
+     */
+    private static long totalGcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String name = gc.getName();
+            if (!name.contains("Concurrent") && !name.contains("Cycles")) {
+                total += Math.max(0, gc.getCollectionTime());
+            }
         }
+        return total;
     }
     /**
      * Stops the counting process.
      */
     public void stop() {
         scheduler.shutdown();
+        metricsWriter.close();
     }
 }
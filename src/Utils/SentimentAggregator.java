@@ -0,0 +1,377 @@
+package Utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+import static Utils.Config.AGGREGATE_BUCKETS;
+import static Utils.Config.AGGREGATE_HTTP_PORT;
+import static Utils.Config.AGGREGATE_WINDOW_SECONDS;
+
+/**
+ * Rolling sentiment aggregates per topic and per product (asin), fed by every analyzed review.
+ *
+ * Every key has a sliding window of {@code AGGREGATE_WINDOW_SECONDS}, split into {@code AGGREGATE_BUCKETS}
+ * time buckets that are recycled as time moves on. A bucket counts the reviews of each of the five
+ * sentiment classes and sums their star ratings in striped {@link LongAdder} and {@link DoubleAdder}
+ * counters, so analysis threads recording at the same time do not contend. A bucket is recycled by
+ * swapping in a fresh bucket for the new period with a compare-and-set, never by clearing its counters,
+ * so a review is always counted in the period it was recorded for. A review whose period has already left
+ * the window is dropped.
+ *
+ * The aggregates are served as JSON from a local HTTP endpoint on {@code AGGREGATE_HTTP_PORT}, which is
+ * off unless -Daggregate.httpPort is set, so processes on the same host do not clash over one port:
+ * - GET /aggregates/topics: all topics.
+ * - GET /aggregates/topics/&lt;topic&gt;: one topic.
+ * - GET /aggregates/products?top=N: the N products with the most reviews in the window.
+ * - GET /aggregates/products/&lt;asin&gt;: one product.
+ * Queries run on the thread of the HTTP server and only read the counters, so they never block analysis.
+ * Topics and products without reviews in the window are evicted. A window is only removed from its map
+ * while no review is being recorded into it; a review that finds its window retired records into the
+ * new window of its key instead, so no review is lost to an eviction.
+ *
+ * Methods:
+ * - record: Adds an analyzed review to the aggregates of its topic and product.
+ * - start: Starts the HTTP endpoint and the eviction of idle topics and products.
+ * - stop: Stops the HTTP endpoint.
+ */
+public class SentimentAggregator {
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final int DEFAULT_TOP_PRODUCTS = 10;
+
+    private final int bucketCount = Math.max(1, AGGREGATE_BUCKETS);
+    private final long bucketMillis = Math.max(1, TimeUnit.SECONDS.toMillis(AGGREGATE_WINDOW_SECONDS) / bucketCount);
+    private final Map<String, Window> topics = new ConcurrentHashMap<>();
+    private final Map<String, Window> products = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictionScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "aggregate-eviction");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private HttpServer httpServer;
+
+    /**
+     * Adds an analyzed review to the aggregates of its topic and of its product.
+     *
+     * @param review The parsed review.
+     * @param result The sentiment of the review.
+     */
+    public void record(Review review, SentimentResult result) {
+        long bucket = System.currentTimeMillis() / bucketMillis;
+        int sentimentClass = Math.max(0, Math.min(SentimentAnalyzer.SENTIMENT_CLASSES - 1, result.getSentimentScore()));
+        if (review.getTopic() != null) {
+            record(topics, review.getTopic(), bucket, sentimentClass, review.getOverall());
+        }
+        if (review.getAsin() != null) {
+            record(products, review.getAsin(), bucket, sentimentClass, review.getOverall());
+        }
+    }
+
+    private void record(Map<String, Window> windows, String key, long bucket, int sentimentClass, double rating) {
+        while (true) {
+            Window window = windows.computeIfAbsent(key, k -> new Window(bucketCount));
+            if (window.record(bucket, sentimentClass, rating)) {
+                return;
+            }
+            // The window is being evicted, wait until it is removed or kept
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Starts the HTTP endpoint, unless the port is 0, and the eviction of idle topics and products.
+     */
+    public void start() {
+        evictionScheduler.scheduleAtFixedRate(this::evictIdleWindows, bucketMillis, bucketMillis, TimeUnit.MILLISECONDS);
+        if (AGGREGATE_HTTP_PORT <= 0) {
+            return;
+        }
+        try {
+            httpServer = HttpServer.create(new InetSocketAddress(AGGREGATE_HTTP_PORT), 0);
+            httpServer.createContext("/aggregates", this::handle);
+            httpServer.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "aggregate-http");
+                thread.setDaemon(true);
+                return thread;
+            }));
+            httpServer.start();
+            System.out.println("Sentiment aggregates served on http://localhost:" + AGGREGATE_HTTP_PORT + "/aggregates/topics");
+        } catch (IOException e) {
+            System.err.println("Error starting the aggregates endpoint on port " + AGGREGATE_HTTP_PORT + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the HTTP endpoint and the eviction of idle topics and products.
+     */
+    public void stop() {
+        evictionScheduler.shutdown();
+        if (httpServer != null) {
+            httpServer.stop(0);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String body;
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "{\"error\":\"only GET is supported\"}");
+                return;
+            } else if (path.equals("/aggregates/topics")) {
+                body = toJson(topics, new ArrayList<>(topics.keySet()));
+            } else if (path.startsWith("/aggregates/topics/")) {
+                body = toJson(topics, List.of(decode(path.substring("/aggregates/topics/".length()))));
+            } else if (path.equals("/aggregates/products")) {
+                body = toJson(products, topProducts(parseTop(exchange.getRequestURI().getQuery())));
+            } else if (path.startsWith("/aggregates/products/")) {
+                body = toJson(products, List.of(decode(path.substring("/aggregates/products/".length()))));
+            } else {
+                respond(exchange, 404, "{\"error\":\"unknown path\"}");
+                return;
+            }
+            respond(exchange, 200, body);
+        } catch (RuntimeException e) {
+            respond(exchange, 400, "{\"error\":\"bad request\"}");
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String decode(String pathSegment) {
+        return URLDecoder.decode(pathSegment, StandardCharsets.UTF_8);
+    }
+
+    private static int parseTop(String query) {
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith("top=")) {
+                    return Math.max(1, Integer.parseInt(parameter.substring("top=".length())));
+                }
+            }
+        }
+        return DEFAULT_TOP_PRODUCTS;
+    }
+
+    private List<String> topProducts(int top) {
+        long now = System.currentTimeMillis() / bucketMillis;
+        List<Map.Entry<String, Long>> totals = new ArrayList<>();
+        for (Map.Entry<String, Window> entry : products.entrySet()) {
+            totals.add(Map.entry(entry.getKey(), entry.getValue().snapshot(now).total));
+        }
+        totals.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < Math.min(top, totals.size()); i++) {
+            keys.add(totals.get(i).getKey());
+        }
+        return keys;
+    }
+
+    private String toJson(Map<String, Window> windows, List<String> keys) throws IOException {
+        long now = System.currentTimeMillis() / bucketMillis;
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = jsonFactory.createGenerator(json)) {
+            generator.writeStartObject();
+            generator.writeNumberField("windowSeconds", bucketMillis * bucketCount / 1000);
+            generator.writeArrayFieldStart("aggregates");
+            for (String key : keys) {
+                Window window = windows.get(key);
+                Snapshot snapshot = window == null ? new Snapshot() : window.snapshot(now);
+                generator.writeStartObject();
+                generator.writeStringField("key", key);
+                generator.writeNumberField("total", snapshot.total);
+                generator.writeObjectFieldStart("counts");
+                for (int i = 0; i < SentimentAnalyzer.SENTIMENT_CLASSES; i++) {
+                    generator.writeNumberField(SentimentAnalyzer.scoreToSentiment(i), snapshot.counts[i]);
+                }
+                generator.writeEndObject();
+                generator.writeNumberField("averageScore", snapshot.averageScore());
+                generator.writeNumberField("averageRating", snapshot.averageRating());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        return json.toString();
+    }
+
+    private void evictIdleWindows() {
+        long oldestLiveBucket = System.currentTimeMillis() / bucketMillis - bucketCount + 1;
+        evictIdle(topics, oldestLiveBucket);
+        evictIdle(products, oldestLiveBucket);
+    }
+
+    private static void evictIdle(Map<String, Window> windows, long oldestLiveBucket) {
+        for (Map.Entry<String, Window> entry : windows.entrySet()) {
+            if (entry.getValue().lastBucket.get() < oldestLiveBucket) {
+                windows.computeIfPresent(entry.getKey(), (key, window) -> window.retire(oldestLiveBucket) ? null : window);
+            }
+        }
+    }
+
+    /**
+     * The sliding window of one key, a ring of time buckets.
+     *
+     * Recording and retiring follow the same order on two volatile fields: a recording thread counts
+     * itself in {@code recording} and then reads {@code retired}, the eviction sets {@code retired} and
+     * then reads {@code recording} and {@code lastBucket}. At least one side sees the other, so either
+     * the review is recorded into a window that stays in the map, or it is not recorded at all and retried.
+     */
+    private static class Window {
+        private final AtomicReferenceArray<Bucket> buckets;
+        private final LongAdder recording = new LongAdder();
+        // Only moves forward, a late review does not delay the eviction
+        private final AtomicLong lastBucket = new AtomicLong(Long.MIN_VALUE);
+        private volatile boolean retired;
+
+        private Window(int bucketCount) {
+            buckets = new AtomicReferenceArray<>(bucketCount);
+            for (int i = 0; i < bucketCount; i++) {
+                buckets.set(i, new Bucket(Long.MIN_VALUE));
+            }
+        }
+
+        /**
+         * @return False if the window is being evicted and the review was not recorded.
+         */
+        private boolean record(long bucketIndex, int sentimentClass, double rating) {
+            recording.increment();
+            try {
+                if (retired) {
+                    return false;
+                }
+                add(bucketIndex, sentimentClass, rating);
+                return true;
+            } finally {
+                recording.decrement();
+            }
+        }
+
+        /**
+         * Retires the window if it is idle, called under the lock of the map entry.
+         *
+         * @return True if the window is retired and must be removed, false if it is kept.
+         */
+        private boolean retire(long oldestLiveBucket) {
+            retired = true;
+            if (recording.sum() > 0 || lastBucket.get() >= oldestLiveBucket) {
+                retired = false;
+                return false;
+            }
+            return true;
+        }
+
+        private void add(long bucketIndex, int sentimentClass, double rating) {
+            int slot = (int) (bucketIndex % buckets.length());
+            Bucket bucket = buckets.get(slot);
+            while (bucket.index < bucketIndex) {
+                Bucket recycled = new Bucket(bucketIndex);
+                if (buckets.compareAndSet(slot, bucket, recycled)) {
+                    bucket = recycled;
+                } else {
+                    bucket = buckets.get(slot);
+                }
+            }
+            if (bucket.index > bucketIndex) {
+                // A late review from a period whose bucket was already recycled
+                return;
+            }
+            // A bucket replaced from here on keeps its period, so the review is never counted in a newer one
+            bucket.counts[sentimentClass].increment();
+            if (!Double.isNaN(rating)) {
+                bucket.ratingSum.add(rating);
+                bucket.ratingCount.increment();
+            }
+            if (lastBucket.get() < bucketIndex) {
+                lastBucket.accumulateAndGet(bucketIndex, Math::max);
+            }
+        }
+
+        private Snapshot snapshot(long currentBucket) {
+            Snapshot snapshot = new Snapshot();
+            for (int slot = 0; slot < buckets.length(); slot++) {
+                Bucket bucket = buckets.get(slot);
+                long index = bucket.index;
+                if (index > currentBucket - buckets.length() && index <= currentBucket) {
+                    for (int i = 0; i < SentimentAnalyzer.SENTIMENT_CLASSES; i++) {
+                        long count = bucket.counts[i].sum();
+                        snapshot.counts[i] += count;
+                        snapshot.total += count;
+                    }
+                    snapshot.ratingSum += bucket.ratingSum.sum();
+                    snapshot.ratingCount += bucket.ratingCount.sum();
+                }
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * The counters of one time period, replaced as a whole when its slot is recycled.
+     */
+    private static class Bucket {
+        private final LongAdder[] counts = new LongAdder[SentimentAnalyzer.SENTIMENT_CLASSES];
+        private final DoubleAdder ratingSum = new DoubleAdder();
+        private final LongAdder ratingCount = new LongAdder();
+        private final long index;
+
+        private Bucket(long index) {
+            this.index = index;
+            for (int i = 0; i < SentimentAnalyzer.SENTIMENT_CLASSES; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+    }
+
+    /**
+     * The totals of a window at the time of a query.
+     */
+    private static class Snapshot {
+        private final long[] counts = new long[SentimentAnalyzer.SENTIMENT_CLASSES];
+        private long total;
+        private double ratingSum;
+        private long ratingCount;
+
+        private double averageScore() {
+            if (total == 0) {
+                return 0.0;
+            }
+            long weighted = 0;
+            for (int i = 0; i < SentimentAnalyzer.SENTIMENT_CLASSES; i++) {
+                weighted += (long) i * counts[i];
+            }
+            return (double) weighted / total;
+        }
+
+        private double averageRating() {
+            return ratingCount == 0 ? 0.0 : ratingSum / ratingCount;
+        }
+    }
+}
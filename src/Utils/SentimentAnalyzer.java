@@ -1,85 +1,370 @@
 package Utils;
 
 import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.neural.rnn.RNNCoreAnnotations;
+import edu.stanford.nlp.parser.lexparser.LexicalizedParser;
 import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.AnnotationPipeline;
+import edu.stanford.nlp.pipeline.BinarizerAnnotator;
+import edu.stanford.nlp.pipeline.ParserAnnotator;
 import edu.stanford.nlp.pipeline.StanfordCoreNLP;
-import edu.stanford.nlp.sentiment.SentimentCoreAnnotations;
+import edu.stanford.nlp.sentiment.CollapseUnaryTransformer;
+import edu.stanford.nlp.sentiment.SentimentCostAndGradient;
+import edu.stanford.nlp.sentiment.SentimentModel;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TreeCoreAnnotations;
 import edu.stanford.nlp.util.CoreMap;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static Utils.Config.ADMISSION_DEGRADE_SENTENCES;
+import static Utils.Config.SENTENCE_CACHE_CAPACITY;
+import static Utils.Config.SENTENCE_PARALLELISM;
+import static Utils.Config.SENTENCE_PARALLEL_THRESHOLD;
 
 /**
  * Provides sentiment analysis for a given text using the Stanford NLP library.
  *
+ * The text is first split into sentences with a cheap tokenize/ssplit pipeline. CoreNLP hands every
+ * pipeline with these properties the same tokenize and ssplit annotators, which are reentrant: they
+ * keep no state between calls. Sentence scores are memoized in a cache shared by all analyzers, so only
+ * sentences that were not seen before are parsed and scored.
+ *
+ * Parsing and scoring do not go through a StanfordCoreNLP pipeline, which would also hand every thread
+ * the same parse and sentiment annotators. Instead, the parser and sentiment models are loaded once from
+ * the local {@link ModelCache} and shared read-only, and every analyzer builds its own parse and binarizer
+ * annotators and its own sentiment scorer around them. The tokens of the splitter are parsed as they are.
+ *
+ * A long review, with at least {@code SENTENCE_PARALLEL_THRESHOLD} sentences that are not cached, has its
+ * sentences parsed in parallel on a shared ForkJoinPool, where every pool thread has its own annotators.
+ * The sentence scores are averaged in the same way, so the result does not depend on the split.
+ * The analysis threads of a mode and the sentence pool share one budget of CPUs: every running analysis
+ * takes one, and a review is only split over the CPUs no analysis is using, plus the CPU of its own
+ * thread, which waits for the split. When the analysis pool is busy, reviews are scored on their own
+ * thread, so the two pools together never run more threads than the process has CPUs.
+ *
  * Methods:
  * - analyzeSentiment: Returns the sentiment of the input text (e.g., Positive, Negative, Neutral, Very Positive).
+ * - analyze: Returns the sentiment of the input text together with the score of every sentence.
+ * - analyzeDegraded: Cheaper analysis under overload, which only scores the first and last sentences of a long text.
+ * - getSentenceCache: Returns the sentence cache shared by the analyzers, to read its hit and miss counts.
  */
 public class SentimentAnalyzer {
-    private StanfordCoreNLP pipeline;
+    // Number of sentiment classes, scored from 0 (Very Negative) to 4 (Very Positive)
+    static final int SENTIMENT_CLASSES = 5;
+    private static final SentimentCache sentenceCache = new SentimentCache(SENTENCE_CACHE_CAPACITY);
+    private static final AtomicBoolean modelsLoaded = new AtomicBoolean(false);
+    private static final ForkJoinPool sentencePool = SENTENCE_PARALLEL_THRESHOLD > 0 ? createSentencePool() : null;
+    private static final ThreadLocal<ScoringPipeline> sentencePipelines = ThreadLocal.withInitial(ScoringPipeline::new);
+    // CPUs that no analysis is running on, lent to the sentence pool while a review is split
+    private static final AtomicInteger idleCpus = new AtomicInteger(PoolSizeController.cpuLimit());
+
+    private StanfordCoreNLP splitter;
+    private ScoringPipeline pipeline;
+    private final SentimentCache cache;
+    private final boolean parallelSentences;
 
+    /**
+     * Creates an analyzer that uses the sentence cache shared by all analyzers.
+     */
     public SentimentAnalyzer() {
-        Properties props = new Properties();
-        props.setProperty("annotators", "tokenize, ssplit, parse, sentiment");
-        this.pipeline = new StanfordCoreNLP(props);
+        this(sentenceCache);
+    }
+
+    /**
+     * @param cache The sentence cache of this analyzer, for example a cache of capacity 0 to score every sentence.
+     */
+    public SentimentAnalyzer(SentimentCache cache) {
+        this(cache, true);
+    }
+
+    /**
+     * @param cache The sentence cache of this analyzer, for example a cache of capacity 0 to score every sentence.
+     * @param parallelSentences False to score every sentence on the calling thread, even for long reviews.
+     */
+    public SentimentAnalyzer(SentimentCache cache, boolean parallelSentences) {
+        this.cache = cache;
+        this.parallelSentences = parallelSentences;
+        Properties splitProps = new Properties();
+        splitProps.setProperty("annotators", "tokenize, ssplit");
+        this.splitter = new StanfordCoreNLP(splitProps);
+
+        this.pipeline = new ScoringPipeline();
+        if (modelsLoaded.compareAndSet(false, true)) {
+            StartupProfiler.mark("models loaded");
+        }
     }
     /**
      * Analyzes the sentiment of the given review text.
      *
      * @param reviewText The input text to analyze.
-     * @return The sentiment class of the first sentence (e.g., Positive, Negative, Neutral), or null if input is invalid.
+     * @return The average sentiment class of all sentences (e.g., Positive, Negative, Neutral), or null if input is invalid.
      */
     public String analyzeSentiment(String reviewText) {
-        if (reviewText != null) {
-            Annotation annotation = new Annotation(reviewText);
-            pipeline.annotate(annotation);
+        SentimentResult result = analyze(reviewText);
+        return result != null ? result.getSentiment() : null;
+    }
 
-            List<CoreMap> sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
-            int sentimentScore = 0;
+    /**
+     * Analyzes the given review text and keeps the score of every sentence.
+     *
+     * @param reviewText The input text to analyze.
+     * @return The averaged sentiment and the per-sentence scores, or null if input is invalid.
+     */
+    public SentimentResult analyze(String reviewText) {
+        if (reviewText != null) {
+            idleCpus.decrementAndGet();
+            try {
+                List<CoreMap> sentences = split(reviewText);
+                if (sentences == null || sentences.isEmpty()) {
+                    return new SentimentResult(2, new byte[0]);
+                }
+                return score(sentences);
+            } finally {
+                idleCpus.incrementAndGet();
+            }
+        } else {
+            return null;
+        }
+    }
 
-            for (CoreMap sentence : sentences) {
-                String sentiment = sentence.get(SentimentCoreAnnotations.SentimentClass.class);
-                sentimentScore += sentimentToScore(sentiment);
+    /**
+     * Analyzes the given review text the cheap way, for reviews admitted over the latency budget.
+     * A review with more than {@code ADMISSION_DEGRADE_SENTENCES} sentences is only scored on its first
+     * and last sentences, where reviews usually state their verdict. Shorter reviews are analyzed fully.
+     *
+     * @param reviewText The input text to analyze.
+     * @return The averaged sentiment and the scores of the scored sentences, or null if input is invalid.
+     */
+    public SentimentResult analyzeDegraded(String reviewText) {
+        if (reviewText != null) {
+            idleCpus.decrementAndGet();
+            try {
+                List<CoreMap> sentences = split(reviewText);
+                if (sentences == null || sentences.isEmpty()) {
+                    return new SentimentResult(2, new byte[0]);
+                }
+                int kept = Math.max(1, ADMISSION_DEGRADE_SENTENCES);
+                if (sentences.size() > kept) {
+                    int head = (kept + 1) / 2;
+                    List<CoreMap> scored = new ArrayList<>(sentences.subList(0, head));
+                    scored.addAll(sentences.subList(sentences.size() - (kept - head), sentences.size()));
+                    sentences = scored;
+                }
+                return score(sentences);
+            } finally {
+                idleCpus.incrementAndGet();
             }
+        } else {
+            return null;
+        }
+    }
 
-            int averageSentimentScore = Math.round((float) sentimentScore / sentences.size());
+    private List<CoreMap> split(String reviewText) {
+        Annotation annotation = new Annotation(reviewText);
+        splitter.annotate(annotation);
+        return annotation.get(CoreAnnotations.SentencesAnnotation.class);
+    }
 
-            return scoreToSentiment(averageSentimentScore);
+    /**
+     * Scores the given sentences, from the cache or in parallel for long reviews, and averages their scores.
+     */
+    private SentimentResult score(List<CoreMap> sentences) {
+        byte[] sentenceScores = new byte[sentences.size()];
+        String[] keys = new String[sentenceScores.length];
+        List<Integer> uncached = new ArrayList<>();
+        for (int i = 0; i < sentenceScores.length; i++) {
+            keys[i] = SentimentCache.normalize(sentences.get(i).get(CoreAnnotations.TextAnnotation.class));
+            int score = cache.get(keys[i]);
+            if (score >= 0) {
+                sentenceScores[i] = (byte) score;
+            } else {
+                uncached.add(i);
+            }
+        }
+
+        int borrowedCpus = 0;
+        if (parallelSentences && sentencePool != null && uncached.size() >= SENTENCE_PARALLEL_THRESHOLD) {
+            borrowedCpus = borrowIdleCpus(Math.min(uncached.size(), sentencePool.getParallelism()) - 1);
+        }
+        if (borrowedCpus > 0) {
+            try {
+                // The calling thread waits for the split, so its own CPU makes one more part
+                sentencePool.invoke(new SentenceTask(cache, sentences, keys, sentenceScores, uncached, 0, uncached.size(), borrowedCpus + 1));
+            } finally {
+                idleCpus.addAndGet(borrowedCpus);
+            }
         } else {
-            return null;
+            for (int i : uncached) {
+                sentenceScores[i] = (byte) scoreSentence(pipeline, cache, sentences.get(i), keys[i]);
+            }
         }
+
+        int sentimentScore = 0;
+        for (byte score : sentenceScores) {
+            sentimentScore += score;
+        }
+
+        int averageSentimentScore = Math.round((float) sentimentScore / sentenceScores.length);
+
+        return new SentimentResult(averageSentimentScore, sentenceScores);
     }
 
     /**
-     * Converts a sentiment class to a numeric score.
+     * Takes up to the given number of CPUs that no analysis is running on.
      *
-     * @param sentiment Sentiment class as a string (e.g., Very Negative, Negative, Neutral, Positive, Very Positive).
-     * @return The corresponding numeric score.
+     * @return The number of CPUs taken, to be given back once the split is done.
      */
-    private int sentimentToScore(String sentiment) {
-        switch (sentiment) {
-            case "Very Negative":
+    private static int borrowIdleCpus(int wanted) {
+        while (wanted > 0) {
+            int idle = idleCpus.get();
+            int borrowed = Math.min(wanted, idle);
+            if (borrowed <= 0) {
                 return 0;
-            case "Negative":
-                return 1;
-            case "Neutral":
-                return 2;
-            case "Positive":
-                return 3;
-            case "Very Positive":
-                return 4;
-            default:
+            }
+            if (idleCpus.compareAndSet(idle, idle - borrowed)) {
+                return borrowed;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Parses and scores a single sentence that is not cached yet, and caches its score.
+     *
+     * @param sentencePipeline The pipeline of the calling thread.
+     * @param cache The sentence cache of the analyzer.
+     * @param sentence The sentence, with the tokens of the splitter.
+     * @param key The normalized text of the sentence, its key in the cache.
+     * @return The numeric score (0 to 4).
+     */
+    private static int scoreSentence(ScoringPipeline sentencePipeline, SentimentCache cache, CoreMap sentence, String key) {
+        int score = sentencePipeline.score(sentence);
+        cache.put(key, score);
+        return score;
+    }
+
+    private static ForkJoinPool createSentencePool() {
+        int parallelism = Math.max(1, Math.min(SENTENCE_PARALLELISM, PoolSizeController.cpuLimit()));
+        return new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("sentence-worker-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * The parse, binarizer and sentiment steps of one thread. The annotators and the scorer are owned by
+     * the pipeline, only the loaded models are shared.
+     */
+    private static class ScoringPipeline {
+        private final AnnotationPipeline annotators = new AnnotationPipeline();
+        private final CollapseUnaryTransformer collapseUnary = new CollapseUnaryTransformer();
+        private final SentimentCostAndGradient scorer = new SentimentCostAndGradient(Models.SENTIMENT, null);
+
+        private ScoringPipeline() {
+            annotators.addAnnotator(new ParserAnnotator(Models.PARSER, false, -1));
+            annotators.addAnnotator(new BinarizerAnnotator("binarizer", new Properties()));
+        }
+
+        /**
+         * @return The sentiment class of the sentence (0 to 4), 2 if it could not be parsed.
+         */
+        private int score(CoreMap sentence) {
+            Annotation annotation = new Annotation(sentence.get(CoreAnnotations.TextAnnotation.class));
+            annotation.set(CoreAnnotations.SentencesAnnotation.class, Collections.singletonList(sentence));
+            annotators.annotate(annotation);
+            Tree binarized = sentence.get(TreeCoreAnnotations.BinarizedTreeAnnotation.class);
+            if (binarized == null) {
                 return 2;
+            }
+            // Like the sentiment annotator, score the tree without its unary nodes
+            Tree tree = collapseUnary.transformTree(binarized);
+            scorer.forwardPropagateTree(tree);
+            int score = RNNCoreAnnotations.getPredictedClass(tree);
+            return score >= 0 && score <= 4 ? score : 2;
+        }
+    }
+
+    /**
+     * The parser and sentiment models, loaded once on first use and shared read-only by all pipelines.
+     */
+    private static class Models {
+        // The flags the parse annotator of CoreNLP loads the parser with
+        private static final LexicalizedParser PARSER =
+                LexicalizedParser.loadModel(ModelCache.resolve(ModelCache.PARSER_MODEL), "-retainTmpSubcategories");
+        private static final SentimentModel SENTIMENT =
+                SentimentModel.loadSerialized(ModelCache.resolve(ModelCache.SENTIMENT_MODEL));
+    }
+
+    /**
+     * Scores a range of the uncached sentences of a review, splitting it into as many parts as CPUs
+     * were borrowed for it. Every part is scored with the pipeline of its pool thread.
+     */
+    private static class SentenceTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final SentimentCache cache;
+        private final List<CoreMap> sentences;
+        private final String[] keys;
+        private final byte[] sentenceScores;
+        private final List<Integer> uncached;
+        private final int start;
+        private final int end;
+        private final int parts;
+
+        private SentenceTask(SentimentCache cache, List<CoreMap> sentences, String[] keys, byte[] sentenceScores,
+                             List<Integer> uncached, int start, int end, int parts) {
+            this.cache = cache;
+            this.sentences = sentences;
+            this.keys = keys;
+            this.sentenceScores = sentenceScores;
+            this.uncached = uncached;
+            this.start = start;
+            this.end = end;
+            this.parts = parts;
+        }
+
+        @Override
+        protected void compute() {
+            if (parts <= 1 || end - start <= 1) {
+                ScoringPipeline sentencePipeline = sentencePipelines.get();
+                for (int index = start; index < end; index++) {
+                    int i = uncached.get(index);
+                    sentenceScores[i] = (byte) scoreSentence(sentencePipeline, cache, sentences.get(i), keys[i]);
+                }
+                return;
+            }
+            int leftParts = parts / 2;
+            int middle = start + (int) ((long) (end - start) * leftParts / parts);
+            invokeAll(new SentenceTask(cache, sentences, keys, sentenceScores, uncached, start, middle, leftParts),
+                    new SentenceTask(cache, sentences, keys, sentenceScores, uncached, middle, end, parts - leftParts));
         }
     }
 
+    /**
+     * Returns the sentence cache shared by all analyzers.
+     *
+     * @return The sentence cache, with its hit and miss counts.
+     */
+    public static SentimentCache getSentenceCache() {
+        return sentenceCache;
+    }
+
     /**
      * Converts a numeric sentiment score back to a sentiment class.
      *
      * @param score The numeric score (0 to 4).
      * @return The corresponding sentiment class as a string.
      */
-    private String scoreToSentiment(int score) {
+    static String scoreToSentiment(int score) {
         switch (score) {
             case 0:
                 return "Very Negative";
@@ -0,0 +1,123 @@
+package Utils;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of thread-confined sentiment analyzers, one per worker thread of an executor.
+ *
+ * Every analyzer owns its own parse and binarizer annotators and sentiment scorer, so no two threads
+ * ever parse or score through the same object. The loaded parser and sentiment models are not
+ * duplicated: all analyzers share one read-only copy. Only the tokenize and ssplit annotators are
+ * shared by CoreNLP between the analyzers, and those keep no state between calls.
+ *
+ * Methods:
+ * - threadFactory: Creates worker threads that each hold an analyzer for their whole lifetime.
+ * - forkJoinThreadFactory: The same for the worker threads of a ForkJoinPool.
+ * - current: Returns the analyzer confined to the calling worker thread.
+ */
+public class SentimentAnalyzerPool {
+    private final int size;
+    private final ConcurrentLinkedQueue<SentimentAnalyzer> idleAnalyzers = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<SentimentAnalyzer> threadAnalyzer = new ThreadLocal<>();
+    private final AtomicInteger createdAnalyzers = new AtomicInteger(0);
+    private final AtomicInteger threadCount = new AtomicInteger(0);
+
+    /**
+     * @param size The maximum number of analyzers, which should match the maximum size of the executor.
+     */
+    public SentimentAnalyzerPool(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1, got " + size);
+        }
+        this.size = size;
+    }
+
+    /**
+     * Creates a thread factory whose threads take an analyzer when they start and give it back
+     * to the pool when they terminate, so analyzers are reused as the executor grows and shrinks.
+     *
+     * @param namePrefix Prefix for the names of the created threads.
+     * @return A thread factory to pass to the executor.
+     */
+    public ThreadFactory threadFactory(String namePrefix) {
+        return runnable -> new Thread(() -> {
+            SentimentAnalyzer analyzer = acquire();
+            threadAnalyzer.set(analyzer);
+            try {
+                runnable.run();
+            } finally {
+                threadAnalyzer.remove();
+                idleAnalyzers.offer(analyzer);
+            }
+        }, namePrefix + "-" + threadCount.incrementAndGet());
+    }
+
+    /**
+     * Creates a factory for the worker threads of a {@link ForkJoinPool}, which take an analyzer
+     * when they start and give it back when the pool retires them.
+     *
+     * @param namePrefix Prefix for the names of the created threads.
+     * @return A thread factory to pass to the ForkJoinPool.
+     */
+    public ForkJoinPool.ForkJoinWorkerThreadFactory forkJoinThreadFactory(String namePrefix) {
+        return forkJoinPool -> {
+            ForkJoinWorkerThread thread = new ForkJoinWorkerThread(forkJoinPool) {
+                private SentimentAnalyzer analyzer;
+
+                @Override
+                protected void onStart() {
+                    super.onStart();
+                    analyzer = acquire();
+                    threadAnalyzer.set(analyzer);
+                }
+
+                @Override
+                protected void onTermination(Throwable exception) {
+                    threadAnalyzer.remove();
+                    idleAnalyzers.offer(analyzer);
+                    super.onTermination(exception);
+                }
+            };
+            thread.setName(namePrefix + "-" + threadCount.incrementAndGet());
+            return thread;
+        };
+    }
+
+    /**
+     * Returns the analyzer confined to the calling thread. A thread that was not created by this
+     * pool (for example a caller running a rejected task) gets its own analyzer on first use.
+     *
+     * @return The analyzer of the current thread.
+     */
+    public SentimentAnalyzer current() {
+        SentimentAnalyzer analyzer = threadAnalyzer.get();
+        if (analyzer == null) {
+            analyzer = acquire();
+            threadAnalyzer.set(analyzer);
+        }
+        return analyzer;
+    }
+
+    private SentimentAnalyzer acquire() {
+        SentimentAnalyzer analyzer = idleAnalyzers.poll();
+        if (analyzer != null) {
+            return analyzer;
+        }
+        if (createdAnalyzers.incrementAndGet() > size) {
+            System.err.println("Analyzer pool exceeded its size of " + size + " analyzers.");
+        }
+        return new SentimentAnalyzer();
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCreatedAnalyzers() {
+        return createdAnalyzers.get();
+    }
+}
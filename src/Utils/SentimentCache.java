@@ -0,0 +1,149 @@
+package Utils;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of sentence sentiment classes, keyed by normalized sentence text.
+ *
+ * The cache is split into segments, each a small LRU map guarded by its own lock, so threads
+ * looking up different sentences rarely contend. When a segment is full its least recently
+ * used sentence is evicted. The capacity is divided over the segments, so with a capacity below the
+ * number of segments some segments keep no sentences at all.
+ *
+ * Methods:
+ * - get: Returns the cached sentiment score of a sentence, or -1 on a miss.
+ * - put: Stores the sentiment score of a sentence.
+ * - getHits / getMisses / size: Statistics used to size the cache against memory.
+ */
+public class SentimentCache {
+    private static final int SEGMENTS = 16;
+    private static final int MISSING = -1;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final int capacity;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity The maximum number of sentences kept in the cache, 0 disables caching.
+     */
+    public SentimentCache(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        // The remainder goes to the first segments, so the segments together hold exactly the capacity
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(this.capacity / SEGMENTS + (i < this.capacity % SEGMENTS ? 1 : 0));
+        }
+    }
+
+    /**
+     * Looks up the sentiment score of a sentence.
+     *
+     * @param key The normalized sentence, see {@link #normalize(String)}.
+     * @return The cached score (0 to 4), or -1 if the sentence is not cached.
+     */
+    public int get(String key) {
+        if (capacity == 0) {
+            misses.increment();
+            return MISSING;
+        }
+        Segment segment = segmentFor(key);
+        Integer score;
+        synchronized (segment) {
+            score = segment.get(key);
+        }
+        if (score == null) {
+            misses.increment();
+            return MISSING;
+        }
+        hits.increment();
+        return score;
+    }
+
+    /**
+     * Stores the sentiment score of a sentence, evicting the least recently used sentence of its segment if needed.
+     *
+     * @param key The normalized sentence, see {@link #normalize(String)}.
+     * @param score The sentiment score (0 to 4).
+     */
+    public void put(String key, int score) {
+        if (capacity == 0) {
+            return;
+        }
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, score);
+        }
+    }
+
+    /**
+     * Normalizes a sentence so that variations in case and whitespace share a cache entry.
+     *
+     * @param sentence The sentence text.
+     * @return The lower-cased sentence with whitespace runs collapsed to single spaces.
+     */
+    public static String normalize(String sentence) {
+        StringBuilder builder = new StringBuilder(sentence.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < sentence.length(); i++) {
+            char c = sentence.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = builder.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    builder.append(' ');
+                    pendingSpace = false;
+                }
+                builder.append(c);
+            }
+        }
+        return builder.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private Segment segmentFor(String key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * A single LRU segment of the cache, must be accessed while holding its lock.
+     */
+    private static class Segment extends LinkedHashMap<String, Integer> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package Utils;
+
+/**
+ * The outcome of analyzing one review: the averaged sentiment and the score of every sentence.
+ *
+ * Scores use the numeric scale of {@link SentimentAnalyzer}, from 0 (Very Negative) to 4 (Very Positive).
+ */
+public class SentimentResult {
+    private final int sentimentScore;
+    private final byte[] sentenceScores;
+
+    public SentimentResult(int sentimentScore, byte[] sentenceScores) {
+        this.sentimentScore = sentimentScore;
+        this.sentenceScores = sentenceScores;
+    }
+
+    /**
+     * @return The averaged sentiment score of the review (0 to 4).
+     */
+    public int getSentimentScore() {
+        return sentimentScore;
+    }
+
+    /**
+     * @return The sentiment class of the review (e.g., Positive, Negative, Neutral).
+     */
+    public String getSentiment() {
+        return SentimentAnalyzer.scoreToSentiment(sentimentScore);
+    }
+
+    /**
+     * @return The score of every sentence, in the order of the sentences in the review.
+     */
+    public byte[] getSentenceScores() {
+        return sentenceScores;
+    }
+}
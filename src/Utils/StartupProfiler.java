@@ -0,0 +1,85 @@
+package Utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Reports how long a process takes to become productive.
+ *
+ * Phases of the startup (models loaded, warm-up done, subscribed) are printed with the time since the
+ * JVM started. After that, every analyzed review is reported through {@link #recordResult}, which
+ * prints the time to the first result and the time to steady state: the moment the average analysis
+ * time of a window of {@code STEADY_WINDOW} reviews is within 10% of the window before it, which
+ * means the JIT and the caches no longer make reviews faster.
+ *
+ * Methods:
+ * - mark: Prints a startup phase with the time since the JVM started.
+ * - recordResult: Records the analysis time of a review until steady state is reached.
+ */
+public class StartupProfiler {
+    private static final int STEADY_WINDOW = 50;
+    private static final double STEADY_TOLERANCE = 0.10;
+    // Stop looking for steady state after this many windows, so the lock is not taken forever
+    private static final int MAX_WINDOWS = 200;
+    private static final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    private static volatile boolean steady;
+    private static long firstResultMillis;
+    private static long windowCount;
+    private static long windowNanos;
+    private static int windows;
+    private static double previousWindowAverage = Double.NaN;
+
+    private StartupProfiler() {
+    }
+
+    /**
+     * Prints a startup phase with the time elapsed since the JVM started.
+     *
+     * @param phase The name of the phase that just finished.
+     */
+    public static void mark(String phase) {
+        System.out.println(String.format(Locale.ROOT, "Startup: %s after %d ms", phase, sinceJvmStart()));
+    }
+
+    /**
+     * Records the analysis time of a review. Does nothing once steady state has been reached.
+     *
+     * @param analysisNanos The analysis time of the review in nanoseconds.
+     */
+    public static void recordResult(long analysisNanos) {
+        if (steady) {
+            return;
+        }
+        synchronized (StartupProfiler.class) {
+            if (steady) {
+                return;
+            }
+            if (firstResultMillis == 0) {
+                firstResultMillis = sinceJvmStart();
+                AsyncLog.info("Startup: time to first result " + firstResultMillis + " ms");
+            }
+            windowNanos += analysisNanos;
+            if (++windowCount < STEADY_WINDOW) {
+                return;
+            }
+            double average = (double) windowNanos / windowCount;
+            windowCount = 0;
+            windowNanos = 0;
+            if (!Double.isNaN(previousWindowAverage)
+                    && Math.abs(average - previousWindowAverage) <= STEADY_TOLERANCE * previousWindowAverage) {
+                steady = true;
+                AsyncLog.info(String.format(Locale.ROOT, "Startup: time to steady state %d ms (%.2f ms per review)",
+                        sinceJvmStart(), average / 1e6));
+            } else if (++windows >= MAX_WINDOWS) {
+                steady = true;
+                AsyncLog.info("Startup: no steady state within " + MAX_WINDOWS * STEADY_WINDOW + " reviews");
+            }
+            previousWindowAverage = average;
+        }
+    }
+
+    private static long sinceJvmStart() {
+        return System.currentTimeMillis() - jvmStartMillis;
+    }
+}
@@ -0,0 +1,123 @@
+package Utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static Utils.Config.WARMUP_CORPUS;
+import static Utils.Config.WARMUP_REVIEWS;
+
+/**
+ * Warms up the analyzers before a mode subscribes to any topic.
+ *
+ * Every analysis thread first loads its models and then analyzes {@code WARMUP_REVIEWS} reviews of the
+ * warm-up corpus, so the JIT has compiled the hot paths of the parser before the first live review
+ * arrives. The threads of an executor wait for each other before they start, so every thread runs
+ * its own share and creates its own analyzer instead of one thread doing all the work.
+ *
+ * Methods:
+ * - run: Warms up the calling thread, or every thread of an executor.
+ */
+public class Warmup {
+    private Warmup() {
+    }
+
+    /**
+     * Warms up the calling thread.
+     *
+     * @param analyze Analyzes one review text.
+     */
+    public static void run(Consumer<String> analyze) {
+        List<String> reviews = loadReviews();
+        if (reviews.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < WARMUP_REVIEWS; i++) {
+            analyze.accept(reviews.get(i % reviews.size()));
+        }
+        StartupProfiler.mark("warm-up of " + WARMUP_REVIEWS + " reviews done");
+    }
+
+    /**
+     * Warms up every thread of an executor and waits until they are done.
+     *
+     * @param executor The executor whose threads analyze the reviews.
+     * @param threads The number of threads of the executor.
+     * @param analyze Analyzes one review text on the calling thread.
+     */
+    public static void run(ExecutorService executor, int threads, Consumer<String> analyze) {
+        List<String> reviews = loadReviews();
+        if (reviews.isEmpty()) {
+            return;
+        }
+        CountDownLatch allStarted = new CountDownLatch(threads);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            // Every thread starts at another review, so the threads do not only hit the sentence cache
+            int offset = t * WARMUP_REVIEWS;
+            tasks.add(executor.submit(() -> {
+                allStarted.countDown();
+                allStarted.await();
+                for (int i = 0; i < WARMUP_REVIEWS; i++) {
+                    analyze.accept(reviews.get((offset + i) % reviews.size()));
+                }
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+            StartupProfiler.mark("warm-up of " + WARMUP_REVIEWS + " reviews on " + threads + " threads done");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Error during warm-up: " + e.getCause());
+        }
+    }
+
+    /**
+     * Loads the review texts of the warm-up corpus, a JSON-lines file or a directory of them.
+     *
+     * @return The review texts, empty if warm-up is disabled or the corpus cannot be read.
+     */
+    private static List<String> loadReviews() {
+        List<String> reviews = new ArrayList<>();
+        if (WARMUP_REVIEWS <= 0) {
+            return reviews;
+        }
+        Path corpus = Paths.get(WARMUP_CORPUS);
+        try {
+            List<Path> files;
+            if (Files.isDirectory(corpus)) {
+                try (Stream<Path> stream = Files.list(corpus)) {
+                    files = stream.filter(file -> file.toString().endsWith(".jsonl")).sorted().collect(Collectors.toList());
+                }
+            } else {
+                files = List.of(corpus);
+            }
+            for (Path file : files) {
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    String reviewText = MessageParser.extractReviewText(line);
+                    if (reviewText != null) {
+                        reviews.add(reviewText);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Warm-up corpus " + corpus + " could not be read, skipping warm-up: " + e.getMessage());
+        }
+        return reviews;
+    }
+}
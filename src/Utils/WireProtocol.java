@@ -0,0 +1,174 @@
+package Utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary messages exchanged between the distributed master and its workers.
+ *
+ * Reviews travel in batches, so that one MPI message carries several short reviews.
+ *
+ * Work batch:   [int count] then per review [long reviewId][byte degraded][int length][UTF-8 review text]
+ * Result batch: [int count] then per review [long reviewId][byte sentiment][long analysisNanos][short sentenceCount][byte score]*
+ *
+ * A result only carries the id of the review, never its text. The master keeps the reviews it sent
+ * and joins every result back to its review by id. A degraded review was admitted over the latency
+ * budget and is analyzed the cheap way (see {@link AdmissionController}).
+ */
+public class WireProtocol {
+    private static final int WORK_HEADER_SIZE = Long.BYTES + Byte.BYTES + Integer.BYTES;
+    private static final int RESULT_HEADER_SIZE = Long.BYTES + Byte.BYTES + Long.BYTES + Short.BYTES;
+
+    private WireProtocol() {
+    }
+
+    /**
+     * Encodes a batch of reviews to be analyzed.
+     *
+     * @param work The reviews with the sequence ids assigned to them by the master.
+     * @return The message payload.
+     */
+    public static byte[] encodeWorkBatch(List<WorkItem> work) {
+        byte[][] texts = new byte[work.size()][];
+        int size = Integer.BYTES;
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = work.get(i).getReviewText().getBytes(StandardCharsets.UTF_8);
+            size += WORK_HEADER_SIZE + texts[i].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(texts.length);
+        for (int i = 0; i < texts.length; i++) {
+            buffer.putLong(work.get(i).getReviewId())
+                    .put((byte) (work.get(i).isDegraded() ? 1 : 0))
+                    .putInt(texts[i].length)
+                    .put(texts[i]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decodes a batch of reviews to be analyzed.
+     *
+     * @param content The message content.
+     * @return The review ids, texts and degraded flags, in the order they were sent.
+     */
+    public static List<WorkItem> decodeWorkBatch(ByteBuffer content) {
+        int count = content.getInt();
+        List<WorkItem> work = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long reviewId = content.getLong();
+            boolean degraded = content.get() != 0;
+            int length = content.getInt();
+            ByteBuffer text = content.slice();
+            text.limit(length);
+            content.position(content.position() + length);
+            work.add(new WorkItem(reviewId, StandardCharsets.UTF_8.decode(text).toString(), degraded));
+        }
+        return work;
+    }
+
+    /**
+     * Encodes the results of an analyzed batch.
+     *
+     * @param results The id, sentiment and analysis time of every review of the batch.
+     * @return The message payload.
+     */
+    public static byte[] encodeResultBatch(List<ResultItem> results) {
+        int size = Integer.BYTES;
+        for (ResultItem result : results) {
+            size += RESULT_HEADER_SIZE + sentenceCount(result.getResult());
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(results.size());
+        for (ResultItem result : results) {
+            SentimentResult sentiment = result.getResult();
+            int sentenceCount = sentenceCount(sentiment);
+            buffer.putLong(result.getReviewId())
+                    .put((byte) sentiment.getSentimentScore())
+                    .putLong(result.getAnalysisNanos())
+                    .putShort((short) sentenceCount)
+                    .put(sentiment.getSentenceScores(), 0, sentenceCount);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decodes the results of an analyzed batch.
+     *
+     * @param content The message content.
+     * @return The id, sentiment and analysis time of every review of the batch.
+     */
+    public static List<ResultItem> decodeResultBatch(ByteBuffer content) {
+        int count = content.getInt();
+        List<ResultItem> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long reviewId = content.getLong();
+            int sentimentScore = content.get();
+            long analysisNanos = content.getLong();
+            byte[] sentenceScores = new byte[content.getShort()];
+            content.get(sentenceScores);
+            results.add(new ResultItem(reviewId, new SentimentResult(sentimentScore, sentenceScores), analysisNanos));
+        }
+        return results;
+    }
+
+    private static int sentenceCount(SentimentResult result) {
+        return Math.min(result.getSentenceScores().length, Short.MAX_VALUE);
+    }
+
+    /**
+     * A review sent from the master to a worker.
+     */
+    public static class WorkItem {
+        private final long reviewId;
+        private final String reviewText;
+        private final boolean degraded;
+
+        public WorkItem(long reviewId, String reviewText, boolean degraded) {
+            this.reviewId = reviewId;
+            this.reviewText = reviewText;
+            this.degraded = degraded;
+        }
+
+        public long getReviewId() {
+            return reviewId;
+        }
+
+        public String getReviewText() {
+            return reviewText;
+        }
+
+        public boolean isDegraded() {
+            return degraded;
+        }
+    }
+
+    /**
+     * The result of a review sent from a worker back to the master.
+     */
+    public static class ResultItem {
+        private final long reviewId;
+        private final SentimentResult result;
+        private final long analysisNanos;
+
+        public ResultItem(long reviewId, SentimentResult result, long analysisNanos) {
+            this.reviewId = reviewId;
+            this.result = result;
+            this.analysisNanos = analysisNanos;
+        }
+
+        public long getReviewId() {
+            return reviewId;
+        }
+
+        public SentimentResult getResult() {
+            return result;
+        }
+
+        public long getAnalysisNanos() {
+            return analysisNanos;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package Utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Round-trip checks of the result store: results appended by a writing store are read back through
+ * {@link ResultStore#openReadOnly}, by review id, by asin and by asin range.
+ *
+ * Runs without the CoreNLP models: java -cp out Utils.ResultStoreTest
+ * Exits with status 1 if a check fails.
+ */
+public class ResultStoreTest {
+    // 63 records per segment, so the records below span several segments
+    private static final long SEGMENT_BYTES = 4096;
+    private static final String[] ASINS = {"B000000001", "B000000002", "A000000003", "C000000004", null};
+    private static int failures = 0;
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("result-store-test");
+        try {
+            appendThenReadBack(directory);
+        } finally {
+            deleteDirectory(directory);
+        }
+        Path empty = Files.createTempDirectory("result-store-empty");
+        try {
+            ResultStore.openReadOnly(empty.toString());
+            check("opening a directory without segments fails", false);
+        } catch (IOException expected) {
+            // No segments to read
+        } finally {
+            deleteDirectory(empty);
+        }
+
+        if (failures > 0) {
+            System.out.println(failures + " checks failed.");
+            System.exit(1);
+        }
+        System.out.println("All ResultStore checks passed.");
+    }
+
+    private static void appendThenReadBack(Path directory) throws IOException {
+        ResultStore writer = new ResultStore(directory.toString(), SEGMENT_BYTES, 1024);
+        for (int i = 0; i < 200; i++) {
+            writer.append(review(i), result(i));
+        }
+        writer.close();
+        check("writer size", writer.size() == 200);
+
+        ResultStore reader = ResultStore.openReadOnly(directory.toString());
+        check("reader size", reader.size() == 200);
+        for (int i = 0; i < 200; i++) {
+            checkRecord(reader.read(i), i);
+        }
+        check("read past the end", reader.read(200) == null);
+        check("read a negative id", reader.read(-1) == null);
+
+        check("lookup B000000001", ids(reader.lookup("B000000001")).equals(expectedIds("B000000001", 200)));
+        check("lookup A000000003", ids(reader.lookup("A000000003")).equals(expectedIds("A000000003", 200)));
+        check("lookup of a long asin by its full value", ids(reader.lookup("LONGASIN-123456")).equals(List.of(7L)));
+        check("lookup of a cut non-ASCII asin", ids(reader.lookup("ÄÖÜ-ÄÖÜ")).equals(List.of(8L)));
+        check("lookup of an unknown asin", reader.lookup("Z999999999").isEmpty());
+        check("lookup of a missing asin", reader.lookup(null).isEmpty());
+
+        List<Long> expectedRange = new ArrayList<>(expectedIds("B000000001", 200));
+        expectedRange.addAll(expectedIds("B000000002", 200));
+        check("range B to C", ids(reader.range("B", "C", 1000)).equals(expectedRange));
+        check("range with a limit", ids(reader.range("B", "C", 5)).equals(expectedRange.subList(0, 5)));
+        check("range end is exclusive", reader.range("B000000001", "B000000002", 1000).stream()
+                .allMatch(result -> result.getAsin().equals("B000000001")));
+
+        try {
+            reader.append(review(0), result(0));
+            check("append to a read-only store fails", false);
+        } catch (UnsupportedOperationException expected) {
+            // Read-only
+        }
+
+        // Appended by another writer while the reader is open, with a segment size that is ignored
+        ResultStore appender = new ResultStore(directory.toString(), SEGMENT_BYTES * 2, 1024);
+        check("reopened writer indexes the existing records", appender.size() == 200);
+        for (int i = 200; i < 300; i++) {
+            appender.append(review(i), result(i));
+        }
+        appender.close();
+        check("reader does not see new records before refresh", reader.size() == 200);
+        check("refresh sees the new records", reader.refresh() == 300);
+        for (int i = 195; i < 300; i++) {
+            checkRecord(reader.read(i), i);
+        }
+        check("lookup after refresh", ids(reader.lookup("B000000001")).equals(expectedIds("B000000001", 300)));
+        reader.close();
+
+        ResultStore reopened = ResultStore.openReadOnly(directory.toString());
+        check("reopened size", reopened.size() == 300);
+        check("reopened lookup", ids(reopened.lookup("C000000004")).equals(expectedIds("C000000004", 300)));
+        reopened.close();
+    }
+
+    private static void checkRecord(ResultStore.StoredResult stored, int i) {
+        if (stored == null) {
+            check("record " + i + " exists", false);
+            return;
+        }
+        byte[] scores = result(i).getSentenceScores();
+        int[] classCounts = new int[5];
+        int min = result(i).getSentimentScore();
+        int max = min;
+        if (scores.length > 0) {
+            min = 4;
+            max = 0;
+        }
+        for (byte score : scores) {
+            classCounts[score]++;
+            min = Math.min(min, score);
+            max = Math.max(max, score);
+        }
+        check("record " + i + " id", stored.getReviewId() == i);
+        check("record " + i + " asin", equal(stored.getAsin(), storedAsin(i)));
+        check("record " + i + " asin hash", stored.getAsinHash() == ResultStore.asinHash(asin(i)));
+        check("record " + i + " sentiment", stored.getSentimentScore() == result(i).getSentimentScore());
+        check("record " + i + " sentence count", stored.getSentenceCount() == scores.length);
+        check("record " + i + " min and max", stored.getMinScore() == min && stored.getMaxScore() == max);
+        check("record " + i + " class counts", Arrays.equals(stored.getClassCounts(), classCounts));
+        check("record " + i + " overall", Double.compare(stored.getOverall(), (float) review(i).getOverall()) == 0);
+        check("record " + i + " review time", stored.getUnixReviewTime() == review(i).getUnixReviewTime());
+        check("record " + i + " analyzed time", stored.getAnalyzedEpochMillis() > 0);
+    }
+
+    private static String asin(int i) {
+        if (i == 7) {
+            return "LONGASIN-123456";
+        }
+        if (i == 8) {
+            return "ÄÖÜ-ÄÖÜ";
+        }
+        return ASINS[i % ASINS.length];
+    }
+
+    /**
+     * The asin as a record holds it: at most 10 UTF-8 bytes, cut between characters.
+     */
+    private static String storedAsin(int i) {
+        if (i == 7) {
+            return "LONGASIN-1";
+        }
+        if (i == 8) {
+            return "ÄÖÜ-Ä";
+        }
+        return asin(i);
+    }
+
+    private static Review review(int i) {
+        double overall = i == 3 ? Double.NaN : 1 + i % 5;
+        return new Review("music", asin(i), "Review " + i, overall, 1_400_000_000L + i);
+    }
+
+    private static SentimentResult result(int i) {
+        byte[] scores = new byte[i % 4];
+        for (int s = 0; s < scores.length; s++) {
+            scores[s] = (byte) ((i + s) % 5);
+        }
+        return new SentimentResult(i % 5, scores);
+    }
+
+    private static List<Long> expectedIds(String storedAsin, int records) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < records; i++) {
+            if (storedAsin.equals(storedAsin(i))) {
+                ids.add((long) i);
+            }
+        }
+        return ids;
+    }
+
+    private static List<Long> ids(List<ResultStore.StoredResult> results) {
+        return results.stream().map(ResultStore.StoredResult::getReviewId).collect(Collectors.toList());
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static void check(String name, boolean passed) {
+        if (!passed) {
+            failures++;
+            System.out.println("FAILED: " + name);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package Utils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Round-trip checks of the binary batches exchanged between the distributed master and its workers.
+ *
+ * Runs without MPI or the CoreNLP models: java -cp out Utils.WireProtocolTest
+ * Exits with status 1 if a check fails.
+ */
+public class WireProtocolTest {
+    private static int failures = 0;
+
+    public static void main(String[] args) {
+        workBatchRoundTrip();
+        emptyBatchesRoundTrip();
+        decodesFromAnOffset();
+        resultBatchRoundTrip();
+        longResultIsCappedAtShortMax();
+
+        if (failures > 0) {
+            System.out.println(failures + " checks failed.");
+            System.exit(1);
+        }
+        System.out.println("All WireProtocol checks passed.");
+    }
+
+    private static void workBatchRoundTrip() {
+        List<WireProtocol.WorkItem> work = List.of(
+                new WireProtocol.WorkItem(0, "Great album, would buy again.", false),
+                new WireProtocol.WorkItem(41, "", true),
+                new WireProtocol.WorkItem(Long.MAX_VALUE, "Très bien — 五つ星 👍", false));
+        List<WireProtocol.WorkItem> decoded = WireProtocol.decodeWorkBatch(ByteBuffer.wrap(WireProtocol.encodeWorkBatch(work)));
+
+        check("work batch size", decoded.size() == work.size());
+        for (int i = 0; i < work.size(); i++) {
+            check("work " + i + " id", decoded.get(i).getReviewId() == work.get(i).getReviewId());
+            check("work " + i + " text", decoded.get(i).getReviewText().equals(work.get(i).getReviewText()));
+            check("work " + i + " degraded", decoded.get(i).isDegraded() == work.get(i).isDegraded());
+        }
+    }
+
+    private static void emptyBatchesRoundTrip() {
+        check("empty work batch", WireProtocol.decodeWorkBatch(ByteBuffer.wrap(WireProtocol.encodeWorkBatch(List.of()))).isEmpty());
+        check("empty result batch", WireProtocol.decodeResultBatch(ByteBuffer.wrap(WireProtocol.encodeResultBatch(List.of()))).isEmpty());
+    }
+
+    /**
+     * The MPI channel hands over the content of a message as a buffer that does not start at position 0.
+     */
+    private static void decodesFromAnOffset() {
+        byte[] payload = WireProtocol.encodeWorkBatch(List.of(
+                new WireProtocol.WorkItem(7, "first", false),
+                new WireProtocol.WorkItem(8, "second", true)));
+        ByteBuffer message = ByteBuffer.allocate(payload.length + 12);
+        message.putInt(payload.length).putLong(-1).put(payload).flip();
+        message.position(12);
+
+        List<WireProtocol.WorkItem> decoded = WireProtocol.decodeWorkBatch(message);
+        check("offset batch size", decoded.size() == 2);
+        check("offset first text", decoded.get(0).getReviewText().equals("first"));
+        check("offset second id", decoded.get(1).getReviewId() == 8);
+        check("offset second text", decoded.get(1).getReviewText().equals("second"));
+        check("offset content consumed", !message.hasRemaining());
+    }
+
+    private static void resultBatchRoundTrip() {
+        List<WireProtocol.ResultItem> results = List.of(
+                new WireProtocol.ResultItem(3, new SentimentResult(4, new byte[]{4, 3, 4}), 1_250_000),
+                new WireProtocol.ResultItem(4, new SentimentResult(2, new byte[0]), 0),
+                new WireProtocol.ResultItem(Long.MAX_VALUE, new SentimentResult(0, new byte[]{0, 1, 2, 3, 4, 0}), Long.MAX_VALUE));
+        List<WireProtocol.ResultItem> decoded = WireProtocol.decodeResultBatch(ByteBuffer.wrap(WireProtocol.encodeResultBatch(results)));
+
+        check("result batch size", decoded.size() == results.size());
+        for (int i = 0; i < results.size(); i++) {
+            WireProtocol.ResultItem expected = results.get(i);
+            WireProtocol.ResultItem actual = decoded.get(i);
+            check("result " + i + " id", actual.getReviewId() == expected.getReviewId());
+            check("result " + i + " sentiment", actual.getResult().getSentimentScore() == expected.getResult().getSentimentScore());
+            check("result " + i + " analysis time", actual.getAnalysisNanos() == expected.getAnalysisNanos());
+            check("result " + i + " sentence scores",
+                    Arrays.equals(actual.getResult().getSentenceScores(), expected.getResult().getSentenceScores()));
+        }
+    }
+
+    private static void longResultIsCappedAtShortMax() {
+        byte[] scores = new byte[Short.MAX_VALUE + 10];
+        Arrays.fill(scores, (byte) 3);
+        List<WireProtocol.ResultItem> decoded = WireProtocol.decodeResultBatch(ByteBuffer.wrap(WireProtocol.encodeResultBatch(List.of(
+                new WireProtocol.ResultItem(1, new SentimentResult(3, scores), 5),
+                new WireProtocol.ResultItem(2, new SentimentResult(1, new byte[]{1}), 6)))));
+
+        check("capped sentence count", decoded.get(0).getResult().getSentenceScores().length == Short.MAX_VALUE);
+        check("result after a capped one", decoded.get(1).getReviewId() == 2
+                && Arrays.equals(decoded.get(1).getResult().getSentenceScores(), new byte[]{1}));
+    }
+
+    private static void check(String name, boolean passed) {
+        if (!passed) {
+            failures++;
+            System.out.println("FAILED: " + name);
+        }
+    }
+}